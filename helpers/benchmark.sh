@@ -0,0 +1,11 @@
+#!/bin/bash
+# run JMH benchmarks, writing results to ./target/jmh-result.json
+# extra arguments are passed to JMH, e.g. a benchmark name pattern: ./helpers/benchmark.sh Mapper
+
+DIRECTORY=$(dirname $0)
+BASEDIR="$DIRECTORY/.."
+
+cd "${BASEDIR}" || exit 1
+mvn -q -Pjmh -DskipTests package || exit 1
+java -cp target/bioinf-1.0-SNAPSHOT.jar org.openjdk.jmh.Main \
+  -rf json -rff target/jmh-result.json "$@"
@@ -8,9 +8,13 @@ DATADIR="$BASEDIR/genomes/clostridium"
 QUERIES="$DATADIR/queries"
 
 REFERENCE="$DATADIR/_clostridium_cellulosi.DG5.dna.toplevel.fa"
+INDEX="$DATADIR/_clostridium_cellulosi.DG5.dna.toplevel.idx"
 
-for query in $(ls ${QUERIES} | grep .fa$); do
-  echo "Mapping $query..."
-  java -jar "${BASEDIR}/target/bioinf-1.0-SNAPSHOT.jar" "${REFERENCE}" "$QUERIES/${query}"
-done
+if [ ! -f "${INDEX}" ] || [ "${REFERENCE}" -nt "${INDEX}" ]; then
+  echo "Indexing reference..."
+  java -jar "${BASEDIR}/target/bioinf-1.0-SNAPSHOT.jar" index "${REFERENCE}" "${INDEX}" || exit 1
+fi
+
+echo "Mapping queries..."
+java -jar "${BASEDIR}/target/bioinf-1.0-SNAPSHOT.jar" "${INDEX}" "${QUERIES}/*-1.fq"
 
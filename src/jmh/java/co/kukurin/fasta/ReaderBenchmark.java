@@ -0,0 +1,104 @@
+package co.kukurin.fasta;
+
+import co.kukurin.fasta.FastaKmerBufferedReader.KmerSequenceGenerator;
+import co.kukurin.jmh.SimulatedReads;
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.channels.Channels;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Parses an in-memory FASTA file of simulated reads; throughput is reported per file (see {@link
+ * #fastaBytes} for its size).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReaderBenchmark {
+
+  private static final int KMER_SIZE = 16;
+  private static final int TOTAL_BASES = 1 << 22;
+
+  @Param({"1000", "10000"})
+  public int readLength;
+
+  byte[] fastaBytes;
+
+  @Setup
+  public void setUp() throws Exception {
+    fastaBytes = SimulatedReads.toFasta(
+        SimulatedReads.reads(TOTAL_BASES / readLength, readLength, 0.0));
+  }
+
+  @Benchmark
+  public void bufferedReaderReadNext(Blackhole blackhole) throws Exception {
+    try (FastaKmerBufferedReader reader = new FastaKmerBufferedReader(
+        new InputStreamReader(new ByteArrayInputStream(fastaBytes)), KMER_SIZE)) {
+      for (Optional<KmerSequenceGenerator> generator = reader.next();
+          generator.isPresent();
+          generator = reader.next()) {
+        for (Iterator<Character> kmer = generator.get().readNext();
+            kmer.hasNext();
+            kmer = generator.get().readNext()) {
+          blackhole.consume(kmer.next());
+        }
+      }
+    }
+  }
+
+  @Benchmark
+  public void bufferedReaderKmers(Blackhole blackhole) throws Exception {
+    try (FastaKmerBufferedReader reader = new FastaKmerBufferedReader(
+        new InputStreamReader(new ByteArrayInputStream(fastaBytes)), KMER_SIZE)) {
+      for (Optional<KmerSequenceGenerator> generator = reader.next();
+          generator.isPresent();
+          generator = reader.next()) {
+        while (generator.get().nextKmer()) {
+          blackhole.consume(generator.get().kmerHash());
+        }
+      }
+    }
+  }
+
+  @Benchmark
+  public void channelReaderRecords(Blackhole blackhole) throws Exception {
+    try (FastaChannelReader reader = new FastaChannelReader(
+        Channels.newChannel(new ByteArrayInputStream(fastaBytes)))) {
+      for (Optional<SequenceRecord> record = reader.nextRecord();
+          record.isPresent();
+          record = reader.nextRecord()) {
+        blackhole.consume(record.get());
+      }
+    }
+  }
+
+  @Benchmark
+  public void channelReaderKmers(Blackhole blackhole) throws Exception {
+    try (FastaChannelReader reader = new FastaChannelReader(
+        Channels.newChannel(new ByteArrayInputStream(fastaBytes)))) {
+      while (reader.nextHeader().isPresent()) {
+        FastaChannelReader.RecordKmers kmers = reader.kmers(KMER_SIZE);
+        while (kmers.nextKmer()) {
+          blackhole.consume(kmers.kmerHash());
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,55 @@
+package co.kukurin.hash;
+
+import co.kukurin.fasta.SequenceRecord;
+import co.kukurin.jmh.SimulatedReads;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Minimizes a single simulated read.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MinimizerBenchmark {
+
+  @Param({"1000", "10000", "100000"})
+  public int readLength;
+
+  @Param({"0.01", "0.1"})
+  public double errorRate;
+
+  private SequenceRecord read;
+  private Minimizer minimizer;
+  private int kmerSize;
+
+  @Setup
+  public void setUp() throws Exception {
+    read = SimulatedReads.reads(1, readLength, errorRate).get(0);
+    minimizer = new Minimizer(SimulatedReads.parameters().getWindowSize());
+    kmerSize = SimulatedReads.parameters().getKmerSize();
+  }
+
+  @Benchmark
+  public MinimizerArray minimize() throws Exception {
+    return minimizer.minimize(new SequenceKmers(read.getBases(), read.getLength(), kmerSize));
+  }
+
+  @Benchmark
+  public long[] minimizeUnique() throws Exception {
+    return minimize().uniqueHashes();
+  }
+}
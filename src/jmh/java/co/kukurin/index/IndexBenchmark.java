@@ -0,0 +1,70 @@
+package co.kukurin.index;
+
+import co.kukurin.fasta.SequenceRecord;
+import co.kukurin.hash.Minimizer;
+import co.kukurin.hash.MinimizerArray;
+import co.kukurin.hash.SequenceKmers;
+import co.kukurin.jmh.SimulatedReads;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Builds the reference index of the benchmark genome (the inverse H of the minimizer array) and
+ * queries it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndexBenchmark {
+
+  private SequenceRecord genome;
+  private MinimizerArray minimizers;
+  private MinimizerIndex index;
+  private int windowSize;
+  private int kmerSize;
+
+  @Setup
+  public void setUp() throws Exception {
+    genome = SimulatedReads.reference();
+    windowSize = SimulatedReads.parameters().getWindowSize();
+    kmerSize = SimulatedReads.parameters().getKmerSize();
+    minimizers = minimizeGenome();
+    index = MinimizerIndex.build(minimizers);
+  }
+
+  @Benchmark
+  public MinimizerArray minimizeGenome() throws Exception {
+    return new Minimizer(windowSize).minimize(
+        new SequenceKmers(genome.getBases(), genome.getLength(), kmerSize));
+  }
+
+  @Benchmark
+  public MinimizerIndex buildTable() {
+    return MinimizerIndex.build(minimizers);
+  }
+
+  /**
+   * Looks up every reference minimizer, i.e. {@code minimizers.size()} successful lookups.
+   */
+  @Benchmark
+  public long findAll() {
+    long postings = 0;
+    for (int i = 0; i < minimizers.size(); i++) {
+      int slot = index.find(minimizers.getHash(i));
+      postings += index.postingsEnd(slot) - index.postingsStart(slot);
+    }
+    return postings;
+  }
+}
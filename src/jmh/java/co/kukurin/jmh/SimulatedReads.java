@@ -0,0 +1,168 @@
+package co.kukurin.jmh;
+
+import co.kukurin.ParameterSupplier.ConstantParameters;
+import co.kukurin.fasta.RecordSource;
+import co.kukurin.fasta.SequenceFiles;
+import co.kukurin.fasta.SequenceRecord;
+import co.kukurin.hash.Minimizer;
+import co.kukurin.hash.MinimizerArray;
+import co.kukurin.hash.SequenceKmers;
+import co.kukurin.index.ReferenceIndex;
+import co.kukurin.index.ReferenceSequences;
+import co.kukurin.stat.StatUtils;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+/**
+ * Benchmark data: reads simulated deterministically from the bundled clostridium genome.
+ *
+ * <p>The genome is read from the path given by system property {@value #REFERENCE_PROPERTY},
+ * relative to the project root by default. Reads are sampled from both strands with errors at a
+ * given per-base rate (substitutions, insertions and deletions in 8:1:1 ratio), always using the
+ * same seed.
+ */
+public class SimulatedReads {
+
+  public static final String REFERENCE_PROPERTY = "bench.reference";
+
+  private static final String DEFAULT_REFERENCE =
+      "genomes/clostridium/_clostridium_cellulosi.DG5.dna.toplevel.fa";
+  private static final long SEED = 42;
+  private static final byte[] BASES = {'A', 'C', 'G', 'T'};
+
+  // same defaults as Main
+  private static final int KMER_SIZE = 16;
+  private static final int WINDOW_SIZE = 90;
+  private static final double EPSILON = 0.15;
+
+  private static SequenceRecord reference;
+  private static ReferenceIndex referenceIndex;
+
+  private SimulatedReads() {
+  }
+
+  public static ConstantParameters parameters() {
+    return ConstantParameters.builder()
+        .kmerSize(KMER_SIZE)
+        .windowSize(WINDOW_SIZE)
+        .tau(StatUtils.mashToJaccardRelaxed(EPSILON, KMER_SIZE))
+        .build();
+  }
+
+  /**
+   * @return first record of the benchmark genome, loaded once per JVM.
+   */
+  public static synchronized SequenceRecord reference() throws IOException {
+    if (reference == null) {
+      String path = System.getProperty(REFERENCE_PROPERTY, DEFAULT_REFERENCE);
+      try (RecordSource source = SequenceFiles.openRecords(Paths.get(path), 1)) {
+        Optional<SequenceRecord> record = source.nextRecord();
+        reference = record.orElseThrow(() -> new IOException("Empty reference " + path));
+      } catch (IOException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new IOException(e);
+      }
+    }
+    return reference;
+  }
+
+  /**
+   * @return index of the benchmark genome built with {@link #parameters()}, built once per JVM.
+   */
+  public static synchronized ReferenceIndex referenceIndex() throws IOException {
+    if (referenceIndex == null) {
+      SequenceRecord genome = reference();
+      ConstantParameters parameters = parameters();
+      MinimizerArray minimizers = new Minimizer(parameters.getWindowSize()).minimize(
+          new SequenceKmers(genome.getBases(), genome.getLength(), parameters.getKmerSize()));
+      referenceIndex = ReferenceIndex.build(minimizers,
+          ReferenceSequences.builder().add(genome.getName(), genome.getLength()).build(),
+          parameters.getKmerSize(), parameters.getWindowSize());
+    }
+    return referenceIndex;
+  }
+
+  /**
+   * @return {@code count} reads of {@code readLength} bases (before indels) with given error rate.
+   */
+  public static List<SequenceRecord> reads(int count, int readLength, double errorRate)
+      throws IOException {
+    SequenceRecord genome = reference();
+    Random random = new Random(SEED);
+    List<SequenceRecord> reads = new ArrayList<>(count);
+
+    for (int i = 0; i < count; i++) {
+      int start = random.nextInt(genome.getLength() - readLength);
+      boolean reverse = random.nextBoolean();
+      byte[] read = new byte[readLength + readLength / 4 + 1];
+      int length = 0;
+
+      for (int j = 0; j < readLength && length < read.length; j++) {
+        int source = reverse ? start + readLength - 1 - j : start + j;
+        byte base = reverse ? complement(genome.getBases()[source]) : genome.getBases()[source];
+
+        if (random.nextDouble() >= errorRate) {
+          read[length++] = base;
+          continue;
+        }
+
+        double error = random.nextDouble();
+        if (error < 0.8) {
+          read[length++] = BASES[(indexOf(base) + 1 + random.nextInt(3)) & 3];
+        } else if (error < 0.9) {
+          read[length++] = base;
+          read[length++] = BASES[random.nextInt(4)];
+        }
+        // otherwise the base is deleted
+      }
+
+      String header = String.format("read_%d_%d_%c", i, start, reverse ? '-' : '+');
+      reads.add(new SequenceRecord(header, read, length));
+    }
+
+    return reads;
+  }
+
+  /**
+   * @return given records formatted as FASTA, with 80 bases per line.
+   */
+  public static byte[] toFasta(List<SequenceRecord> records) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (SequenceRecord record : records) {
+      byte[] header = (">" + record.getHeader() + "\n").getBytes(StandardCharsets.UTF_8);
+      out.write(header, 0, header.length);
+      for (int i = 0; i < record.getLength(); i += 80) {
+        out.write(record.getBases(), i, Math.min(80, record.getLength() - i));
+        out.write('\n');
+      }
+    }
+    return out.toByteArray();
+  }
+
+  private static int indexOf(byte base) {
+    switch (base) {
+      case 'C':
+      case 'c':
+        return 1;
+      case 'G':
+      case 'g':
+        return 2;
+      case 'T':
+      case 't':
+        return 3;
+      default:
+        return 0;
+    }
+  }
+
+  private static byte complement(byte base) {
+    return BASES[3 - indexOf(base)];
+  }
+}
@@ -0,0 +1,139 @@
+package co.kukurin.map;
+
+import co.kukurin.ParameterSupplier;
+import co.kukurin.ParameterSupplier.ConstantParameters;
+import co.kukurin.fasta.SequenceRecord;
+import co.kukurin.hash.Minimizer;
+import co.kukurin.hash.MinimizerArray;
+import co.kukurin.hash.SequenceKmers;
+import co.kukurin.index.ReferenceIndex;
+import co.kukurin.jmh.SimulatedReads;
+import co.kukurin.map.ReadMapper.ReadMapperResult;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Mapping stages for a batch of {@value #READS} simulated reads against the benchmark genome;
+ * times are per batch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MapperBenchmark {
+
+  private static final int READS = 32;
+
+  @Param({"1000", "5000", "20000"})
+  public int readLength;
+
+  @Param({"0.01", "0.05", "0.1"})
+  public double errorRate;
+
+  private ReferenceIndex reference;
+  private QueryMapper queryMapper;
+  private List<SequenceRecord> reads;
+  private long[][] queryHashes;
+  private int[][] strandVotes;
+  private ReadMapper[] readMappers;
+  private CandidateRegions[] regions;
+  private final MappingBuffers buffers = new MappingBuffers();
+
+  @Setup
+  public void setUp() throws Exception {
+    ConstantParameters parameters = SimulatedReads.parameters();
+    Minimizer minimizer = new Minimizer(parameters.getWindowSize());
+    reference = SimulatedReads.referenceIndex();
+    queryMapper = new QueryMapper(reference, parameters);
+    reads = SimulatedReads.reads(READS, readLength, errorRate);
+
+    queryHashes = new long[READS][];
+    strandVotes = new int[READS][];
+    readMappers = new ReadMapper[READS];
+    regions = new CandidateRegions[READS];
+    for (int i = 0; i < READS; i++) {
+      SequenceRecord read = reads.get(i);
+      MinimizerArray minimizers = minimizer.minimize(
+          new SequenceKmers(read.getBases(), read.getLength(), parameters.getKmerSize()));
+      queryHashes[i] = minimizers.uniqueHashes();
+      strandVotes[i] = minimizers.strandVotes(queryHashes[i]);
+      readMappers[i] = new ReadMapper(
+          new ParameterSupplier(parameters, read.getLength(), queryHashes[i].length));
+      // own copy, buffers are overwritten by the next query
+      CandidateRegions collected =
+          readMappers[i].collectCandidateRegions(queryHashes[i], reference, buffers);
+      regions[i] = new CandidateRegions();
+      for (int region = 0; region < collected.size(); region++) {
+        regions[i].add(collected.getLow(region), collected.getHigh(region));
+      }
+    }
+  }
+
+  @Benchmark
+  public void collectCandidateRegions(Blackhole blackhole) {
+    for (int i = 0; i < READS; i++) {
+      blackhole.consume(
+          readMappers[i].collectCandidateRegions(queryHashes[i], reference, buffers));
+    }
+  }
+
+  @Benchmark
+  public void findMostLikelyMatch(Blackhole blackhole) {
+    for (int i = 0; i < READS; i++) {
+      blackhole.consume(readMappers[i].findMostLikelyMatch(
+          reference, queryHashes[i], strandVotes[i], regions[i]));
+    }
+  }
+
+  /**
+   * Inserts and removes every reference minimizer of each candidate region, counting shared
+   * minimizers after each step; isolates {@link SketchMap} from the window bookkeeping.
+   */
+  @Benchmark
+  public long sketchMap() {
+    long shared = 0;
+    for (int i = 0; i < READS; i++) {
+      SketchMap sketchMap = new SketchMap(queryHashes[i]);
+      int sketchSize = queryHashes[i].length;
+
+      for (int region = 0; region < regions[i].size(); region++) {
+        int from = reference.indexOfFirstMinimizerGte(regions[i].getLow(region));
+        int to = reference.indexOfFirstMinimizerGte(regions[i].getHigh(region) + readLength);
+        sketchMap.reset(reference, from, to);
+
+        for (int m = from; m < to; m++) {
+          sketchMap.putReference(m);
+          shared += sketchMap.getSharedMinimizers(sketchSize);
+        }
+        for (int m = from; m < to; m++) {
+          sketchMap.removeReference(m);
+          shared += sketchMap.getSharedMinimizers(sketchSize);
+        }
+      }
+    }
+    return shared;
+  }
+
+  @Benchmark
+  public void mapReads(Blackhole blackhole) throws Exception {
+    for (SequenceRecord read : reads) {
+      Optional<ReadMapperResult> result = queryMapper.map(read);
+      blackhole.consume(result);
+    }
+  }
+}
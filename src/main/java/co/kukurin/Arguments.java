@@ -0,0 +1,89 @@
+package co.kukurin;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal command line parser. Arguments of the form {@code --name value}, {@code --name=value} or
+ * {@code -n value} (for registered short names) are options, everything else is positional.
+ */
+class Arguments {
+
+  private static final Map<String, String> SHORT_NAMES = new HashMap<>();
+
+  static {
+    SHORT_NAMES.put("t", "threads");
+  }
+
+  private final List<String> positional;
+  private final Map<String, String> options;
+
+  private Arguments(List<String> positional, Map<String, String> options) {
+    this.positional = positional;
+    this.options = options;
+  }
+
+  /**
+   * @throws IllegalArgumentException if an option is missing its value.
+   */
+  static Arguments parse(String[] args) {
+    List<String> positional = new ArrayList<>();
+    Map<String, String> options = new HashMap<>();
+
+    for (int i = 0; i < args.length; i++) {
+      String arg = args[i];
+
+      if (!arg.startsWith("-") || arg.length() == 1) {
+        positional.add(arg);
+        continue;
+      }
+
+      String name = arg.startsWith("--")
+          ? arg.substring(2)
+          : SHORT_NAMES.getOrDefault(arg.substring(1), arg.substring(1));
+      int separator = name.indexOf('=');
+      if (separator >= 0) {
+        options.put(name.substring(0, separator), name.substring(separator + 1));
+      } else if (i + 1 < args.length) {
+        options.put(name, args[++i]);
+      } else {
+        throw new IllegalArgumentException("Missing value for option " + arg);
+      }
+    }
+
+    return new Arguments(Collections.unmodifiableList(positional), options);
+  }
+
+  List<String> getPositional() {
+    return positional;
+  }
+
+  boolean has(String name) {
+    return options.containsKey(name);
+  }
+
+  String getString(String name, String defaultValue) {
+    return options.getOrDefault(name, defaultValue);
+  }
+
+  int getInt(String name, int defaultValue) {
+    String value = options.get(name);
+    try {
+      return value == null ? defaultValue : Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Expected integer for --" + name + ", got " + value);
+    }
+  }
+
+  double getDouble(String name, double defaultValue) {
+    String value = options.get(name);
+    try {
+      return value == null ? defaultValue : Double.parseDouble(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Expected number for --" + name + ", got " + value);
+    }
+  }
+}
@@ -0,0 +1,250 @@
+package co.kukurin;
+
+import co.kukurin.ParameterSupplier.ConstantParameters;
+import co.kukurin.benchmark.PipelineMetrics;
+import co.kukurin.evaluate.AccuracyStats;
+import co.kukurin.evaluate.MashMapOutput;
+import co.kukurin.evaluate.PredictedMapping;
+import co.kukurin.evaluate.WgsimTruth;
+import co.kukurin.fasta.RecordSource;
+import co.kukurin.fasta.SequenceFiles;
+import co.kukurin.fasta.SequenceRecord;
+import co.kukurin.index.ReferenceIndex;
+import co.kukurin.map.QueryMapper;
+import co.kukurin.pipeline.MappingPipeline;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Logger;
+
+/**
+ * End-to-end regression harness: simulates reads with wgsim, maps them in-process and scores the
+ * mappings against the true origins encoded in read names, optionally side by side with MashMap.
+ *
+ * <p>Datasets use the same parameters as {@code helpers/simulate.sh}. Simulated reads are kept in
+ * the work directory and reused by later runs, so results of different builds are comparable.
+ */
+class Evaluation {
+
+  private static final Logger logger = Logger.getLogger("Evaluation");
+
+  private static final int SEED = 42;
+  private static final int DEFAULT_READ_PAIRS = 50;
+  private static final double DEFAULT_MIN_OVERLAP = 0.5;
+  private static final String DEFAULT_WGSIM = "helpers/wgsim";
+  private static final String REPORT_FILE = "evaluation.tsv";
+
+  private static final double[] BASE_ERROR_RATES =
+      {0.005, 0.01, 0.05, 0.075, 0.075, 0.1, 0.1, 0.15, 0.15, 0.15};
+  private static final double[] MUTATION_RATES = {0, 0, 0.01, 0.02, 0.05, 0.05, 0.1, 0.1, 0.1, 0.1};
+  private static final double[] INDEL_RATES = {0, 0, 0, 0, 0.025, 0.025, 0.05, 0.05, 0.1, 0.1};
+  private static final int[] READ_LENGTHS =
+      {5000, 5000, 10000, 15000, 25000, 50000, 75000, 100000, 100000, 150000};
+
+  private final Path reference;
+  private final Path workDirectory;
+  private final Arguments arguments;
+  private final int threads;
+  private final double minOverlap;
+
+  Evaluation(Path reference, Path workDirectory, Arguments arguments) {
+    this.reference = reference;
+    this.workDirectory = workDirectory;
+    this.arguments = arguments;
+    this.threads = arguments.getInt("threads", Main.defaultThreads());
+    this.minOverlap = arguments.getDouble("min-overlap", DEFAULT_MIN_OVERLAP);
+  }
+
+  /**
+   * Evaluates all selected datasets, printing a report to {@code out} and to {@value
+   * #REPORT_FILE} in the work directory.
+   */
+  void run(PrintStream out) throws Exception {
+    Files.createDirectories(workDirectory);
+
+    long startTime = System.currentTimeMillis();
+    ReferenceIndex referenceIndex =
+        Main.loadReference(reference.toString(), arguments, threads);
+    ConstantParameters constantParameters = Main.getParameters(
+        referenceIndex.getKmerSize(), referenceIndex.getWindowSize(), Main.epsilon(arguments));
+    logger.info(String.format("Reference loaded in %d ms", System.currentTimeMillis() - startTime));
+
+    List<String> rows = new ArrayList<>();
+    rows.add("dataset\tmapper\treads\tseconds\treads/s\tprecision\trecall\tidentity error"
+        + "\tpeak heap MB\tpeak RSS MB");
+    for (int dataset : datasets()) {
+      Path queries = simulate(dataset);
+      rows.add(evaluate(dataset, queries, referenceIndex, constantParameters));
+      if (arguments.has("mashmap")) {
+        rows.add(evaluateMashMap(dataset, queries));
+      }
+    }
+
+    Files.write(workDirectory.resolve(REPORT_FILE), rows);
+    rows.forEach(row -> out.println(row.replace('\t', '|')));
+  }
+
+  private List<Integer> datasets() {
+    List<Integer> datasets = new ArrayList<>();
+    String selected = arguments.getString("datasets", null);
+    if (selected == null) {
+      for (int i = 0; i < READ_LENGTHS.length; i++) {
+        datasets.add(i);
+      }
+      return datasets;
+    }
+
+    for (String dataset : selected.split(",")) {
+      int index = Integer.parseInt(dataset.trim());
+      if (index < 0 || index >= READ_LENGTHS.length) {
+        throw new IllegalArgumentException("No dataset " + index);
+      }
+      datasets.add(index);
+    }
+    return datasets;
+  }
+
+  private Path simulate(int dataset) throws IOException, InterruptedException {
+    int pairs = arguments.getInt("pairs", DEFAULT_READ_PAIRS);
+    Path first = workDirectory.resolve(String.format("sim-%d-%d-1.fq", dataset, pairs));
+    if (Files.exists(first)) {
+      return first;
+    }
+
+    Path second = workDirectory.resolve(String.format("sim-%d-%d-2.fq", dataset, pairs));
+    logger.info("Simulating " + first);
+    run(arguments.getString("wgsim", DEFAULT_WGSIM),
+        "-1" + READ_LENGTHS[dataset],
+        "-2" + READ_LENGTHS[dataset],
+        "-r" + MUTATION_RATES[dataset],
+        "-e" + BASE_ERROR_RATES[dataset],
+        "-R" + INDEL_RATES[dataset],
+        "-N" + pairs,
+        "-S" + SEED,
+        reference.toString(),
+        first.toString(),
+        second.toString());
+    return first;
+  }
+
+  private String evaluate(
+      int dataset,
+      Path queries,
+      ReferenceIndex referenceIndex,
+      ConstantParameters constantParameters) throws Exception {
+    resetPeakHeap();
+    PipelineMetrics metrics = new PipelineMetrics();
+    AccuracyStats stats = new AccuracyStats(minOverlap);
+
+    ForkJoinPool segmentPool = new ForkJoinPool(threads);
+    long startTime = System.nanoTime();
+    try (RecordSource source = SequenceFiles.openRecords(queries, threads)) {
+      new MappingPipeline(threads, metrics).run(source,
+          new QueryMapper(referenceIndex, constantParameters, metrics,
+              Main.mappingOptions(arguments, segmentPool)),
+          (query, results) -> truthOf(query).ifPresent(truth -> stats.add(truth, query.getLength(),
+              results.stream().findFirst()
+                  .map(value -> PredictedMapping.of(value, query.getLength())))));
+    } finally {
+      segmentPool.shutdown();
+    }
+    double seconds = (System.nanoTime() - startTime) / 1e9;
+
+    return row(dataset, "bioinf", stats, seconds, peakHeapMegabytes(), peakRssMegabytes());
+  }
+
+  private String evaluateMashMap(int dataset, Path queries) throws Exception {
+    Path output = workDirectory.resolve(queries.getFileName() + ".mashmap");
+    long startTime = System.nanoTime();
+    run(arguments.getString("mashmap", null),
+        "-s", reference.toString(),
+        "-q", queries.toString(),
+        "-o", output.toString());
+    double seconds = (System.nanoTime() - startTime) / 1e9;
+
+    Map<String, PredictedMapping> mappings = MashMapOutput.read(output);
+    AccuracyStats stats = new AccuracyStats(minOverlap);
+    try (RecordSource source = SequenceFiles.openRecords(queries, threads)) {
+      for (Optional<SequenceRecord> query = source.nextRecord();
+          query.isPresent();
+          query = source.nextRecord()) {
+        SequenceRecord record = query.get();
+        truthOf(record).ifPresent(truth -> stats.add(truth, record.getLength(),
+            Optional.ofNullable(mappings.get(record.getName()))));
+      }
+    }
+
+    // memory of the external process is not observable from here
+    return row(dataset, "mashmap", stats, seconds, Double.NaN, Double.NaN);
+  }
+
+  private static Optional<WgsimTruth> truthOf(SequenceRecord query) {
+    Optional<WgsimTruth> truth = WgsimTruth.parse(query.getName());
+    if (!truth.isPresent()) {
+      logger.warning("No wgsim truth in read name " + query.getName());
+    }
+    return truth;
+  }
+
+  private static String row(int dataset, String mapper, AccuracyStats stats, double seconds,
+      double peakHeap, double peakRss) {
+    return String.format(Locale.ROOT, "%d\t%s\t%d\t%.3f\t%.1f\t%.4f\t%.4f\t%.4f\t%.1f\t%.1f",
+        dataset, mapper, stats.getReads(), seconds, stats.getReads() / seconds, stats.precision(),
+        stats.recall(), stats.meanIdentityError(), peakHeap, peakRss);
+  }
+
+  private static void run(String... command) throws IOException, InterruptedException {
+    Process process = new ProcessBuilder(command)
+        .redirectErrorStream(true)
+        .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+        .start();
+    int exitCode = process.waitFor();
+    if (exitCode != 0) {
+      throw new IOException(command[0] + " exited with code " + exitCode);
+    }
+  }
+
+  private static void resetPeakHeap() {
+    System.gc();
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      pool.resetPeakUsage();
+    }
+  }
+
+  private static double peakHeapMegabytes() {
+    long peak = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        peak += pool.getPeakUsage().getUsed();
+      }
+    }
+    return peak / (double) (1 << 20);
+  }
+
+  /**
+   * @return peak resident set size of this process so far, or NaN where /proc is not available.
+   */
+  private static double peakRssMegabytes() {
+    try {
+      for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+        if (line.startsWith("VmHWM:")) {
+          return Long.parseLong(line.replaceAll("[^0-9]", "")) / 1024.0;
+        }
+      }
+    } catch (IOException | NumberFormatException e) {
+      // not on Linux
+    }
+    return Double.NaN;
+  }
+}
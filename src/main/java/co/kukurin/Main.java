@@ -1,31 +1,49 @@
 package co.kukurin;
 
 import co.kukurin.ParameterSupplier.ConstantParameters;
-import co.kukurin.fasta.FastaKmerBufferedReader;
-import co.kukurin.fasta.FastaKmerBufferedReader.KmerSequenceGenerator;
-import co.kukurin.hash.Hash;
+import co.kukurin.benchmark.CompositeBenchmarkImpl;
+import co.kukurin.benchmark.PipelineMetrics;
+import co.kukurin.fasta.FastaChannelReader;
+import co.kukurin.fasta.RecordSource;
+import co.kukurin.fasta.SequenceFiles;
+import co.kukurin.fasta.SequenceRecord;
+import co.kukurin.hash.ChunkedMinimizer;
 import co.kukurin.hash.Minimizer;
-import co.kukurin.hash.Minimizer.MinimizerValue;
-import co.kukurin.map.ReadMapper;
-import co.kukurin.map.ReadMapper.CandidateRegion;
+import co.kukurin.hash.MinimizerArray;
+import co.kukurin.index.MinimizerIndex;
+import co.kukurin.index.PackedSequence;
+import co.kukurin.index.ReferenceIndex;
+import co.kukurin.index.ReferenceIndexFile;
+import co.kukurin.index.ReferenceSequences;
+import co.kukurin.map.MappingOptions;
+import co.kukurin.map.QueryMapper;
+import co.kukurin.output.LegacyWriter;
+import co.kukurin.output.MappingWriter;
+import co.kukurin.output.PafWriter;
+import co.kukurin.pipeline.MappingPipeline;
+import co.kukurin.server.MappingServer;
 import co.kukurin.stat.StatUtils;
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.Multimap;
-import com.google.common.hash.HashFunction;
-import com.google.common.hash.Hashing;
-import java.io.FileOutputStream;
-import java.io.FileReader;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Collection;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
+import java.util.Timer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 /**
  * Program entry point.
@@ -33,98 +51,454 @@ import java.util.stream.Collectors;
 public class Main {
 
   private static final Logger logger = Logger.getLogger("Main");
-  public static final HashFunction HASH_FUNCTION = Hashing.murmur3_128(/*seed=*/ 42);
+
+  private static final int DEFAULT_KMER_SIZE = 16;
+  private static final int DEFAULT_WINDOW_SIZE = 90;
+  private static final double DEFAULT_EPSILON = 0.15;
+  // MashMap's default cutoff for random mappings, used to derive the window size
+  private static final double WINDOW_P_VALUE = 1e-3;
+  private static final double DEFAULT_FILTER_FRACTION = 0.0002;
+  private static final String FORMAT_PAF = "paf";
+  private static final String FORMAT_LEGACY = "legacy";
+  private static final int DEFAULT_MAX_CONNECTIONS = 16;
+  private static final int DEFAULT_PARALLEL_FILES = 2;
+  private static final int REFERENCE_READ_SIZE = 1 << 16;
 
   /**
-   * @param args Reference and query file in FASTA format. Reference file contains a single read
-   * while query file can contain multiple reads.
+   * @param args Options and a reference FASTA or index file followed by query FASTA or FASTQ
+   * files, or one of the {@code index}, {@code evaluate} and {@code server} commands with its
+   * files; options are described in the usage text and README.
    */
   public static void main(String[] args) throws IOException {
+    Arguments arguments = parseArguments(args);
+    List<String> positional = arguments.getPositional();
+
+    if (positional.size() == 3 && positional.get(0).equals("index")) {
+      writeIndex(positional.get(1), positional.get(2), arguments);
+      return;
+    }
+
+    if (positional.size() == 3 && positional.get(0).equals("evaluate")) {
+      evaluate(positional.get(1), positional.get(2), arguments);
+      return;
+    }
+
+    if (positional.size() == 3 && positional.get(0).equals("server")) {
+      serve(positional.get(1), Integer.parseInt(positional.get(2)), arguments);
+      return;
+    }
 
-    if (args.length != 2) {
-      System.err.println("Expected parameters: [reference FASTA file] [query FASTA file]");
+    if (positional.size() < 2) {
+      exitWithUsage();
+    }
+
+    String format = arguments.getString("format", FORMAT_PAF);
+    if (!format.equals(FORMAT_PAF) && !format.equals(FORMAT_LEGACY)) {
+      System.err.println("Unknown output format " + format);
+      exitWithUsage();
+    }
+
+    List<Path> queryFiles = null;
+    try {
+      queryFiles = QueryFiles.expand(positional.subList(1, positional.size()));
+    } catch (IOException e) {
+      System.err.println("Cannot find query files: " + e.getLocalizedMessage());
       System.exit(1);
     }
 
-    String referenceFilename = args[0];
-    String queryFilename = args[1];
-    ConstantParameters constantParameters = getParameters(16, 90, 0.15);
+    mapFiles(positional.get(0), queryFiles, format, arguments);
+  }
 
-    logger.info("Mapping " + queryFilename);
-    String outputFile = queryFilename + "-out.txt";
-    try (PrintStream out = new PrintStream(new FileOutputStream(outputFile));
-        FastaKmerBufferedReader referenceReader = new FastaKmerBufferedReader(
-            new FileReader(referenceFilename), constantParameters.getKmerSize());
-        FastaKmerBufferedReader queryReader = new FastaKmerBufferedReader(
-            new FileReader(queryFilename), constantParameters.getKmerSize())) {
+  /**
+   * Maps query files against a reference index built or loaded once. Files are scheduled on a
+   * pool of {@code --parallel-files} threads, each reading its file and writing its own output,
+   * while queries of all files are mapped on one shared pool of worker threads.
+   */
+  private static void mapFiles(
+      String referenceFilename, List<Path> queryFiles, String format, Arguments arguments) {
+    int threads = arguments.getInt("threads", defaultThreads());
+    int parallelFiles = Math.max(1, Math.min(queryFiles.size(),
+        arguments.getInt("parallel-files", DEFAULT_PARALLEL_FILES)));
 
+    try {
       long startTime = System.currentTimeMillis();
-      Minimizer minimizer = new Minimizer(constantParameters.getWindowSize());
+      ReferenceIndex referenceIndex = loadReference(referenceFilename, arguments, threads);
+      ConstantParameters constantParameters = getParameters(
+          referenceIndex.getKmerSize(), referenceIndex.getWindowSize(), epsilon(arguments));
+      logger.info(String.format("Reference loaded in %d ms",
+          System.currentTimeMillis() - startTime));
 
-      // retain reference minimizers for efficient computation of W(B_i)
-      // 4.2. "we store W(B) as an array M of tuples (h, pos)"
-      KmerSequenceGenerator referenceSequenceGenerator = referenceReader.next()
-          .orElseThrow(() -> new IOException("Invalid FASTA file " + referenceFilename));
-      List<MinimizerValue> referenceMinimizers = minimizer.minimize(referenceSequenceGenerator);
+      PipelineMetrics metrics = new PipelineMetrics();
+      Timer reporter = startReporter(metrics, arguments.getInt("report-interval", 0));
+      ForkJoinPool segmentPool = new ForkJoinPool(threads);
+      ExecutorService workers = MappingPipeline.newWorkerPool(threads);
+      ExecutorService fileScheduler = Executors.newFixedThreadPool(parallelFiles);
+      QueryMapper queryMapper = new QueryMapper(referenceIndex, constantParameters, metrics,
+          mappingOptions(arguments, segmentPool));
+      MappingPipeline pipeline = new MappingPipeline(workers, 4 * threads, metrics);
 
-      // "further, to enable O(1) lookup of all the occurences of a particular minimizer's
-      // hashed value h, we laso replicate W(B) as a hash table H.
-      Map<Hash, Collection<Integer>> inverse = inverse(referenceMinimizers);
-
-      for (Optional<KmerSequenceGenerator> queryEntryOptional = queryReader.next();
-          queryEntryOptional.isPresent();
-          queryEntryOptional = queryReader.next()) {
-        KmerSequenceGenerator kmerGenerator = queryEntryOptional.get();
-
-        // 4.3. "to maximize effectiveness of the filter, we set sketch size s = |W_h(A)|
-        List<MinimizerValue> queryHashes = minimizer.minimize(kmerGenerator);
-        Set<Hash> uniqueHashes = queryHashes.stream().map(MinimizerValue::getHash)
-            .collect(Collectors.toSet());
-
-        ParameterSupplier parameterSupplier = new ParameterSupplier(
-            constantParameters, kmerGenerator.totalReadBytes(), uniqueHashes.size());
-
-        ReadMapper readMapper = new ReadMapper(parameterSupplier);
-        List<CandidateRegion> candidateRegions =
-            readMapper.collectCandidateRegions(uniqueHashes, inverse);
-
-        readMapper.findMostLikelyMatch(referenceMinimizers, queryHashes, candidateRegions)
-            .ifPresent(result -> {
-              out.print("> ");
-              out.println(kmerGenerator.getHeader());
-              out.println(String.format("position: %s | identity: %s",
-                  result.getIndex(),
-                  result.getNucIdentity()));
-            });
+      int failed = 0;
+      try {
+        List<Future<Boolean>> mapped = new ArrayList<>();
+        for (Path queryFile : queryFiles) {
+          mapped.add(fileScheduler.submit(() ->
+              mapFile(queryFile, format, threads, referenceIndex, queryMapper, pipeline)));
+        }
+        for (Future<Boolean> success : mapped) {
+          failed += success.get() ? 0 : 1;
+        }
+      } finally {
+        fileScheduler.shutdown();
+        workers.shutdown();
+        segmentPool.shutdown();
+      }
+
+      reporter.cancel();
+      System.err.print("Pipeline metrics: ");
+      metrics.log(System.err);
+      if (arguments.has("metrics")) {
+        metrics.writeJson(Paths.get(arguments.getString("metrics", null)));
       }
 
       double deltaTimeSeconds = (System.currentTimeMillis() - startTime) / 1000.0;
       logger.info(String.format("Runtime: %.2f s", deltaTimeSeconds));
+      if (failed > 0) {
+        System.err.println(String.format("ERROR mapping %d of %d query files",
+            failed, queryFiles.size()));
+        System.exit(1);
+      }
+    } catch (Exception e) {
+      System.err.println("ERROR executing program:");
+      System.err.println(e.getLocalizedMessage());
+      e.printStackTrace();
+
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Maps one query file next to it; on failure, its partial output is deleted.
+   *
+   * @return whether the file was mapped.
+   */
+  private static boolean mapFile(Path queryFile, String format, int threads,
+      ReferenceIndex referenceIndex, QueryMapper queryMapper, MappingPipeline pipeline)
+      throws IOException {
+    Path outputFile = Paths.get(
+        queryFile + (format.equals(FORMAT_PAF) ? "-out.paf" : "-out.txt"));
+    logger.info("Mapping " + queryFile);
+    long startTime = System.currentTimeMillis();
+
+    try (RecordSource queryReader = SequenceFiles.openRecords(queryFile, threads);
+        MappingWriter writer = openWriter(format, outputFile, referenceIndex)) {
+      pipeline.run(queryReader, queryMapper, writer);
+    } catch (Exception e) {
+      System.err.println("ERROR mapping " + queryFile + ":");
+      System.err.println(e.getLocalizedMessage());
+      e.printStackTrace();
+
+      Files.deleteIfExists(outputFile);
+      return false;
+    }
+
+    logger.info(String.format("Mapped %s in %.2f s",
+        queryFile, (System.currentTimeMillis() - startTime) / 1000.0));
+    return true;
+  }
+
+  static MappingOptions mappingOptions(Arguments arguments, Executor segmentExecutor) {
+    return MappingOptions.defaults()
+        .withMaxMappings(arguments.getInt("max-mappings", 1))
+        .withSegmentLength(arguments.getInt("segment-length", 0))
+        .withVerifiedMappings(arguments.getInt("verify", 0))
+        .withSegmentExecutor(segmentExecutor);
+  }
+
+  private static MappingWriter openWriter(
+      String format, Path outputFile, ReferenceIndex referenceIndex) throws IOException {
+    if (format.equals(FORMAT_LEGACY)) {
+      return new LegacyWriter(new BufferedOutputStream(Files.newOutputStream(outputFile)));
+    }
+    return new PafWriter(referenceIndex.getSequences(), FileChannel.open(outputFile,
+        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+  }
+
+  private static Timer startReporter(PipelineMetrics metrics, int intervalSeconds) {
+    Timer timer = new Timer("metrics-reporter", /*isDaemon=*/ true);
+    if (intervalSeconds > 0) {
+      long period = TimeUnit.SECONDS.toMillis(intervalSeconds);
+      timer.schedule(new CompositeBenchmarkImpl(System.err, metrics.benchmarks()), period, period);
+    }
+    return timer;
+  }
+
+  private static void serve(String referenceFilename, int port, Arguments arguments) {
+    int threads = arguments.getInt("threads", defaultThreads());
+    try {
+      long startTime = System.currentTimeMillis();
+      ReferenceIndex referenceIndex = loadReference(referenceFilename, arguments, threads);
+      ConstantParameters constantParameters = getParameters(
+          referenceIndex.getKmerSize(), referenceIndex.getWindowSize(), epsilon(arguments));
+      logger.info(String.format("Reference loaded in %d ms",
+          System.currentTimeMillis() - startTime));
+
+      PipelineMetrics metrics = new PipelineMetrics();
+      startReporter(metrics, arguments.getInt("report-interval", 0));
+      ForkJoinPool segmentPool = new ForkJoinPool(threads);
+      QueryMapper queryMapper = new QueryMapper(referenceIndex, constantParameters, metrics,
+          mappingOptions(arguments, segmentPool));
+      try (MappingServer server = new MappingServer(queryMapper, referenceIndex.getSequences(),
+          threads, arguments.getInt("max-connections", DEFAULT_MAX_CONNECTIONS), metrics);
+          ServerSocketChannel channel = ServerSocketChannel.open()) {
+        channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        logger.info("Serving mappings on " + channel.getLocalAddress());
+        server.serve(channel);
+      } finally {
+        segmentPool.shutdown();
+      }
     } catch (Exception e) {
       System.err.println("ERROR executing program:");
       System.err.println(e.getLocalizedMessage());
       e.printStackTrace();
 
-      Files.deleteIfExists(Paths.get(outputFile));
+      System.exit(1);
+    }
+  }
+
+  private static void evaluate(
+      String referenceFilename, String workDirectory, Arguments arguments) {
+    try {
+      new Evaluation(Paths.get(referenceFilename), Paths.get(workDirectory), arguments)
+          .run(System.out);
+    } catch (Exception e) {
+      System.err.println("ERROR executing program:");
+      System.err.println(e.getLocalizedMessage());
+      e.printStackTrace();
 
       System.exit(1);
     }
   }
 
-  private static ConstantParameters getParameters(int kmerSize, int windowSize, double epsilon) {
+  static int defaultThreads() {
+    return Runtime.getRuntime().availableProcessors();
+  }
+
+  private static Arguments parseArguments(String[] args) {
+    try {
+      return Arguments.parse(args);
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      exitWithUsage();
+      return null;
+    }
+  }
+
+  private static void exitWithUsage() {
+    System.err.println("Expected parameters: [options] [reference FASTA or index file] "
+        + "[query FASTA/FASTQ files, globs or @manifest]...");
+    System.err.println("                 or: index [reference FASTA file] [index file]");
+    System.err.println("                 or: evaluate [reference FASTA file] [work directory]");
+    System.err.println("                 or: server [reference FASTA or index file] [port]");
+    System.err.println("Options:");
+    System.err.println("  -t, --threads N    number of mapping and decompression threads "
+        + "(default: all cores)");
+    System.err.println("  --min-identity I   minimum identity of reported mappings (default: "
+        + (1 - DEFAULT_EPSILON) + ")");
+    System.err.println("  --max-mappings N   report up to N mappings per read above the identity "
+        + "threshold, or all of them if 0 (default: 1, the best mapping only)");
+    System.err.println("  --verify N         align the best N mappings of each read to the "
+        + "reference, reporting exact identity, interval and edit distance (default: 0)");
+    System.err.println("  --segment-length L split reads of at least 2L bases into segments of L "
+        + "bases, mapped separately and chained (default: map whole reads)");
+    System.err.println("  --format FORMAT    output format, paf (default) or legacy");
+    System.err.println("  --parallel-files N number of query files read and written at the same "
+        + "time (default: " + DEFAULT_PARALLEL_FILES + ")");
+    System.err.println("  --report-interval S");
+    System.err.println("                     log pipeline metrics every S seconds");
+    System.err.println("  --metrics FILE     write pipeline metrics as JSON to FILE at exit");
+    System.err.println("Indexing options:");
+    System.err.println("  --kmer-size K      k-mer size (default: " + DEFAULT_KMER_SIZE + ")");
+    System.err.println("  --window-size W    minimizer window size (default: " + DEFAULT_WINDOW_SIZE
+        + ")");
+    System.err.println("  --min-read-length L");
+    System.err.println("                     derive the window size from the reference length, L "
+        + "and --min-identity instead");
+    System.err.println("  --sample-fraction F");
+    System.err.println("                     keep a fraction F of minimizers, sampled by hash "
+        + "(default: 1, all of them)");
+    System.err.println("  --max-occ N        ignore reference minimizers occurring more than N "
+        + "times when seeding, also overriding the cutoff of an index file");
+    System.err.println("  --verify N         with N > 0, also store reference bases to verify "
+        + "mappings against");
+    System.err.println("  --filter-fraction F");
+    System.err.println("                     ignore the most frequent fraction F of reference "
+        + "minimizers (default: " + DEFAULT_FILTER_FRACTION + ", unless --max-occ is given)");
+    System.err.println("Evaluation options:");
+    System.err.println("  --datasets I,J,..  simulated datasets to evaluate (default: all of 0-9)");
+    System.err.println("  --pairs N          read pairs simulated per dataset (default: 50)");
+    System.err.println("  --min-overlap F    overlap with the true origin required of a correct "
+        + "mapping (default: 0.5)");
+    System.err.println("  --wgsim PATH       wgsim executable (default: helpers/wgsim)");
+    System.err.println("  --mashmap PATH     also evaluate the MashMap executable at PATH");
+    System.err.println("Server options:");
+    System.err.println("  --max-connections N");
+    System.err.println("                     number of query batches mapped at the same time "
+        + "(default: " + DEFAULT_MAX_CONNECTIONS + ")");
+    System.exit(1);
+  }
+
+  private static void writeIndex(
+      String referenceFilename, String indexFilename, Arguments arguments) throws IOException {
+    logger.info("Indexing " + referenceFilename);
+    try {
+      long startTime = System.currentTimeMillis();
+      ReferenceIndex referenceIndex = buildIndex(
+          referenceFilename, arguments, arguments.getInt("threads", defaultThreads()));
+      ReferenceIndexFile.write(referenceIndex, Paths.get(indexFilename));
+
+      double deltaTimeSeconds = (System.currentTimeMillis() - startTime) / 1000.0;
+      logger.info(String.format("Index written to %s in %.2f s", indexFilename, deltaTimeSeconds));
+    } catch (Exception e) {
+      System.err.println("ERROR executing program:");
+      System.err.println(e.getLocalizedMessage());
+      e.printStackTrace();
+
+      Files.deleteIfExists(Paths.get(indexFilename));
+
+      System.exit(1);
+    }
+  }
+
+  /**
+   * @return index read from given index file or built from given FASTA file; the occurrence cutoff
+   * stored in an index file is replaced if {@code --max-occ} or {@code --filter-fraction} is given.
+   */
+  static ReferenceIndex loadReference(
+      String referenceFilename, Arguments arguments, int threads) throws Exception {
+    Path referencePath = Paths.get(referenceFilename);
+    if (!ReferenceIndexFile.isIndexFile(referencePath)) {
+      return buildIndex(referenceFilename, arguments, threads);
+    }
+
+    ReferenceIndex referenceIndex = ReferenceIndexFile.open(referencePath);
+    return arguments.has("max-occ") || arguments.has("filter-fraction")
+        ? withOccurrenceCutoff(referenceIndex, arguments)
+        : referenceIndex;
+  }
+
+  private static ReferenceIndex buildIndex(
+      String referenceFilename, Arguments arguments, int threads) throws Exception {
+    int kmerSize = arguments.getInt("kmer-size", DEFAULT_KMER_SIZE);
+    int windowSize = windowSize(referenceFilename, kmerSize, arguments, threads);
+    long hashThreshold = Minimizer.hashThreshold(arguments.getDouble("sample-fraction", 1));
+    logger.info(String.format("Indexing with k = %d, w = %d, sample fraction %s",
+        kmerSize, windowSize, arguments.getString("sample-fraction", "1")));
+
+    ForkJoinPool indexPool = new ForkJoinPool(threads);
+    try (FastaChannelReader referenceReader = new FastaChannelReader(
+        SequenceFiles.openChannel(Paths.get(referenceFilename), threads))) {
+      ChunkedMinimizer minimizer =
+          new ChunkedMinimizer(kmerSize, windowSize, hashThreshold, indexPool, threads);
+      ReferenceSequences.Builder sequences = ReferenceSequences.builder();
+      // bases are only needed to verify mappings, which most runs do not
+      PackedSequence.Builder packedBases =
+          arguments.getInt("verify", 0) > 0 ? PackedSequence.builder() : null;
+      byte[] bases = new byte[REFERENCE_READ_SIZE];
+
+      // retain reference minimizers for efficient computation of W(B_i)
+      // 4.2. "we store W(B) as an array M of tuples (h, pos)"
+      // sequences are laid out back to back, so positions in M are global
+      for (Optional<String> header = referenceReader.nextHeader();
+          header.isPresent();
+          header = referenceReader.nextHeader()) {
+        minimizer.startSequence(sequences.nextStart());
+        for (int read = referenceReader.readBases(bases, 0, bases.length);
+            read >= 0;
+            read = referenceReader.readBases(bases, 0, bases.length)) {
+          minimizer.add(bases, 0, read);
+          if (packedBases != null) {
+            packedBases.add(bases, 0, read);
+          }
+        }
+        sequences.add(SequenceRecord.nameOf(header.get()), minimizer.endSequence());
+      }
+
+      MinimizerArray referenceMinimizers = minimizer.finish();
+      if (referenceMinimizers.isEmpty()) {
+        throw new IOException("Invalid FASTA file " + referenceFilename);
+      }
+
+      // "further, to enable O(1) lookup of all the occurences of a particular minimizer's
+      // hashed value h, we laso replicate W(B) as a hash table H.
+      ReferenceIndex referenceIndex = ReferenceIndex.build(
+          referenceMinimizers, sequences.build(), kmerSize, windowSize, hashThreshold, indexPool);
+      if (packedBases != null) {
+        referenceIndex = referenceIndex.withBases(packedBases.build());
+      }
+      return withOccurrenceCutoff(referenceIndex, arguments);
+    } finally {
+      indexPool.shutdown();
+    }
+  }
+
+  /**
+   * @return window size given with {@code --window-size}, or derived from {@code --min-read-length}
+   * and the reference length so that mappings of reads that long at the minimum identity stand out
+   * from random matches (see {@link StatUtils#recommendedWindowSize}).
+   */
+  private static int windowSize(
+      String referenceFilename, int kmerSize, Arguments arguments, int threads) throws IOException {
+    if (arguments.has("window-size") || !arguments.has("min-read-length")) {
+      return arguments.getInt("window-size", DEFAULT_WINDOW_SIZE);
+    }
+
+    long referenceLength = 0;
+    try (FastaChannelReader referenceReader = new FastaChannelReader(
+        SequenceFiles.openChannel(Paths.get(referenceFilename), threads))) {
+      byte[] bases = new byte[REFERENCE_READ_SIZE];
+      while (referenceReader.nextHeader().isPresent()) {
+        for (int read = referenceReader.readBases(bases, 0, bases.length);
+            read >= 0;
+            read = referenceReader.readBases(bases, 0, bases.length)) {
+          referenceLength += read;
+        }
+      }
+    }
+
+    return StatUtils.recommendedWindowSize(WINDOW_P_VALUE, kmerSize, epsilon(arguments),
+        arguments.getInt("min-read-length", 0), Math.max(1, referenceLength));
+  }
+
+  /**
+   * @return maximum error rate of reported mappings, one minus {@code --min-identity}.
+   */
+  static double epsilon(Arguments arguments) {
+    return arguments.has("min-identity")
+        ? 1 - arguments.getDouble("min-identity", 1 - DEFAULT_EPSILON)
+        : DEFAULT_EPSILON;
+  }
+
+  private static ReferenceIndex withOccurrenceCutoff(
+      ReferenceIndex referenceIndex, Arguments arguments) {
+    MinimizerIndex table = referenceIndex.getMinimizerIndex();
+    int maxOccurrences = arguments.has("max-occ")
+        ? arguments.getInt("max-occ", Integer.MAX_VALUE)
+        : table.occurrenceCutoff(
+            arguments.getDouble("filter-fraction", DEFAULT_FILTER_FRACTION));
+
+    logger.info(String.format(
+        "Ignoring %d of %d distinct minimizers occurring more than %d times when seeding",
+        table.hashesOccurringMoreThan(maxOccurrences),
+        table.distinctHashes(),
+        maxOccurrences));
+    return referenceIndex.withMaxOccurrences(maxOccurrences);
+  }
+
+  static ConstantParameters getParameters(int kmerSize, int windowSize, double epsilon) {
     return ConstantParameters.builder()
         .windowSize(windowSize)
         .kmerSize(kmerSize)
         .tau(StatUtils.mashToJaccardRelaxed(epsilon, kmerSize))
         .build();
   }
-
-  private static Map<Hash, Collection<Integer>> inverse(List<MinimizerValue> indexHash) {
-    Multimap<Hash, Integer> result = ArrayListMultimap.create();
-    for (int i = 0; i < indexHash.size(); i++) {
-      MinimizerValue minimizerValue = indexHash.get(i);
-      result.put(minimizerValue.getHash(), minimizerValue.getOriginalIndex());
-    }
-    return result.asMap();
-  }
 }
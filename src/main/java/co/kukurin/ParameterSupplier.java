@@ -25,7 +25,7 @@ public class ParameterSupplier {
   private final int queryLength;
   private final int sketchSize;
 
-  ParameterSupplier(ConstantParameters constantParameters, int queryLength, int sketchSize) {
+  public ParameterSupplier(ConstantParameters constantParameters, int queryLength, int sketchSize) {
     this.constantParameters = constantParameters;
     this.queryLength = queryLength;
     this.sketchSize = sketchSize;
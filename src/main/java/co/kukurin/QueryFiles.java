@@ -0,0 +1,101 @@
+package co.kukurin;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Expands query file arguments into query files. An argument is either a file name, a glob pattern
+ * such as {@code queries/*-1.fq} (matched by {@link java.nio.file.FileSystem#getPathMatcher}, so
+ * {@code **} crosses directories), or {@code @manifest}, a file listing one query file or pattern
+ * per line, relative to the manifest. Blank lines and lines starting with {@code #} in a manifest
+ * are ignored.
+ */
+class QueryFiles {
+
+  private static final String GLOB_CHARACTERS = "*?[{";
+
+  private QueryFiles() {
+  }
+
+  /**
+   * @return query files in argument order, glob matches sorted by name, each file once.
+   * @throws IOException if a file or manifest cannot be found, or a pattern matches no files.
+   */
+  static List<Path> expand(List<String> arguments) throws IOException {
+    Set<Path> files = new LinkedHashSet<>();
+    for (String argument : arguments) {
+      expand(argument, Paths.get(""), files);
+    }
+    return new ArrayList<>(files);
+  }
+
+  private static void expand(String argument, Path directory, Set<Path> files) throws IOException {
+    if (argument.startsWith("@")) {
+      Path manifest = directory.resolve(argument.substring(1));
+      Path manifestDirectory = manifest.toAbsolutePath().getParent();
+      for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+        line = line.trim();
+        if (!line.isEmpty() && !line.startsWith("#")) {
+          expand(line, manifestDirectory, files);
+        }
+      }
+    } else if (isGlob(argument)) {
+      List<Path> matches = glob(directory, argument);
+      if (matches.isEmpty()) {
+        throw new IOException("No query files match " + argument);
+      }
+      files.addAll(matches);
+    } else {
+      Path file = directory.resolve(argument).normalize();
+      if (!Files.isRegularFile(file)) {
+        throw new NoSuchFileException(file.toString());
+      }
+      files.add(file);
+    }
+  }
+
+  private static List<Path> glob(Path directory, String pattern) throws IOException {
+    // walk from the deepest directory named without glob characters
+    Path patternPath = Paths.get(pattern);
+    Path base = patternPath.isAbsolute() ? patternPath.getRoot() : Paths.get("");
+    int literal = 0;
+    while (literal < patternPath.getNameCount() - 1
+        && !isGlob(patternPath.getName(literal).toString())) {
+      base = base.resolve(patternPath.getName(literal++));
+    }
+    Path root = directory.resolve(base);
+    if (!Files.isDirectory(root)) {
+      return new ArrayList<>();
+    }
+
+    Path remainder = patternPath.subpath(literal, patternPath.getNameCount());
+    PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + remainder);
+    int maxDepth = remainder.toString().contains("**")
+        ? Integer.MAX_VALUE
+        : remainder.getNameCount();
+    try (Stream<Path> paths = Files.walk(root, maxDepth)) {
+      return paths
+          .filter(Files::isRegularFile)
+          .filter(path -> matcher.matches(root.relativize(path)))
+          .map(Path::normalize)
+          .sorted()
+          .collect(Collectors.toList());
+    }
+  }
+
+  private static boolean isGlob(String argument) {
+    return argument.chars().anyMatch(c -> GLOB_CHARACTERS.indexOf(c) >= 0);
+  }
+}
@@ -0,0 +1,15 @@
+package co.kukurin.align;
+
+import lombok.Value;
+
+/**
+ * Reference interval {@code [start, end)} a query aligns to, and the edit distance of the
+ * alignment.
+ */
+@Value
+public class Alignment {
+
+  private int start;
+  private int end;
+  private int editDistance;
+}
@@ -0,0 +1,143 @@
+package co.kukurin.align;
+
+import co.kukurin.index.PackedSequence;
+import java.util.Arrays;
+
+/**
+ * Aligns a query to an interval of the packed reference with Myers' bit-vector algorithm, in the
+ * blocked form of Hyyro for queries longer than 64 bases: each column of the dynamic programming
+ * matrix is kept as vertical differences in {@code ceil(m / 64)} pairs of words and advanced by one
+ * reference base in O(m / 64) word operations.
+ *
+ * <p>Alignment is semi-global: the whole query is aligned with unit cost edits, while the
+ * alignment may start and end anywhere within the reference interval. A forward pass finds the end
+ * of the best alignment, a pass over the reversed query and reference from that end finds its
+ * start.
+ *
+ * <p>Instances keep scratch space between calls and are not thread safe.
+ */
+public class MyersAligner {
+
+  private static final int WORD_BITS = Long.SIZE;
+  private static final int ALPHABET_SIZE = 4;
+
+  // match masks of the query, per base code and block
+  private long[] peq = new long[0];
+  private long[] plusVertical = new long[0];
+  private long[] minusVertical = new long[0];
+  private int bestDistance;
+
+  /**
+   * @param query base codes of the query (see {@link PackedSequence#code(byte)}); {@link
+   * PackedSequence#UNKNOWN} bases match nothing.
+   * @return best alignment of the whole query within reference positions {@code [from, to)}; of
+   * equally good alignments, the one ending first and, of those, the shortest.
+   */
+  public Alignment align(byte[] query, int queryLength, PackedSequence reference, int from,
+      int to) {
+    int endColumn = search(query, queryLength, true, reference, from, to - from);
+    if (endColumn < 0) {
+      return new Alignment(from, from, queryLength);
+    }
+
+    // an alignment with d edits spans at most m + d reference bases
+    int end = from + endColumn + 1;
+    int startColumn = search(query, queryLength, false, reference, end - 1,
+        Math.min(end - from, queryLength + bestDistance));
+    return new Alignment(end - startColumn - 1, end, bestDistance);
+  }
+
+  /**
+   * Runs the query, forward or reversed, over {@code length} reference bases starting at {@code
+   * first} and going in the same direction.
+   *
+   * @return column (reference base) at which the least edit distance is first reached, -1 if no
+   * column beats aligning the query to nothing; the distance is left in {@code bestDistance}.
+   */
+  private int search(byte[] query, int queryLength, boolean forward, PackedSequence reference,
+      int first, int length) {
+    int blocks = Math.max(1, (queryLength + WORD_BITS - 1) / WORD_BITS);
+    prepare(query, queryLength, forward, blocks);
+
+    int lastBlock = blocks - 1;
+    int lastBits = queryLength - WORD_BITS * lastBlock;
+    long lastMask = lastBits == WORD_BITS ? -1L : (1L << lastBits) - 1;
+
+    long[] peq = this.peq;
+    long[] pv = plusVertical;
+    long[] mv = minusVertical;
+    // distance at the last row above the last block
+    int aboveLastBlock = WORD_BITS * lastBlock;
+    bestDistance = queryLength;
+    int bestColumn = -1;
+    for (int column = 0; column < length; column++) {
+      int base = reference.get(forward ? first + column : first - column);
+      int eqOffset = base * blocks;
+
+      // the first query row is free, so horizontal differences enter the top block as 0
+      int carry = 0;
+      for (int block = 0; block < lastBlock; block++) {
+        carry = advanceBlock(pv, mv, block, peq[eqOffset + block], carry);
+      }
+      aboveLastBlock += carry;
+      advanceBlock(pv, mv, lastBlock, peq[eqOffset + lastBlock], carry);
+
+      int distance = aboveLastBlock
+          + Long.bitCount(pv[lastBlock] & lastMask)
+          - Long.bitCount(mv[lastBlock] & lastMask);
+      if (distance < bestDistance) {
+        bestDistance = distance;
+        bestColumn = column;
+      }
+    }
+
+    return bestColumn;
+  }
+
+  private void prepare(byte[] query, int queryLength, boolean forward, int blocks) {
+    if (plusVertical.length < blocks) {
+      peq = new long[ALPHABET_SIZE * blocks];
+      plusVertical = new long[blocks];
+      minusVertical = new long[blocks];
+    }
+
+    Arrays.fill(peq, 0, ALPHABET_SIZE * blocks, 0);
+    for (int i = 0; i < queryLength; i++) {
+      int base = query[forward ? i : queryLength - 1 - i];
+      if (base < ALPHABET_SIZE) {
+        peq[base * blocks + i / WORD_BITS] |= 1L << (i % WORD_BITS);
+      }
+    }
+
+    // the first column holds distances of query prefixes to the empty reference
+    for (int block = 0; block < blocks; block++) {
+      plusVertical[block] = -1L;
+      minusVertical[block] = 0;
+    }
+  }
+
+  /**
+   * Advances a block by one column given the horizontal difference entering it from above.
+   *
+   * @return horizontal difference leaving the block at its last row.
+   */
+  private static int advanceBlock(long[] plusVertical, long[] minusVertical, int block, long eq,
+      int carry) {
+    long pv = plusVertical[block];
+    long mv = minusVertical[block];
+    long carryNegative = carry >>> (Integer.SIZE - 1);
+
+    long xv = eq | mv;
+    eq |= carryNegative;
+    long xh = (((eq & pv) + pv) ^ pv) | eq;
+    long ph = mv | ~(xh | pv);
+    long mh = pv & xh;
+    int out = (int) (ph >>> (WORD_BITS - 1)) - (int) (mh >>> (WORD_BITS - 1));
+
+    ph = (ph << 1) | ((carry + 1) >>> 1);
+    mh = (mh << 1) | carryNegative;
+    plusVertical[block] = mh | ~(xv | ph);
+    minusVertical[block] = ph & xv;
+    return out;
+  }
+}
@@ -0,0 +1,160 @@
+package co.kukurin.benchmark;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and per-stage latency histograms of the mapping pipeline. All methods may be called
+ * concurrently; recording is a handful of uncontended atomic additions.
+ */
+public class PipelineMetrics {
+
+  /**
+   * Timed stages of mapping a single read.
+   */
+  public enum Stage {
+    PARSE("parse"),
+    SKETCH("sketch"),
+    CANDIDATES("candidates"),
+    WINDOW_SCAN("windowScan"),
+    VERIFY("verify");
+
+    private final String label;
+
+    Stage(String label) {
+      this.label = label;
+    }
+  }
+
+  private final long startNanos = System.nanoTime();
+  private final Map<Stage, LatencyHistogram> stages = new EnumMap<>(Stage.class);
+  private final LongAdder reads = new LongAdder();
+  private final LongAdder bases = new LongAdder();
+  private final LongAdder mappedReads = new LongAdder();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder candidateRegions = new LongAdder();
+
+  public PipelineMetrics() {
+    for (Stage stage : Stage.values()) {
+      stages.put(stage, new LatencyHistogram());
+    }
+  }
+
+  public void recordStage(Stage stage, long nanos) {
+    stages.get(stage).record(nanos);
+  }
+
+  public void recordRead(int length) {
+    reads.increment();
+    bases.add(length);
+  }
+
+  public void recordCandidates(int readHits, int regions) {
+    hits.add(readHits);
+    candidateRegions.add(regions);
+  }
+
+  public void recordMapped() {
+    mappedReads.increment();
+  }
+
+  public LatencyHistogram getStage(Stage stage) {
+    return stages.get(stage);
+  }
+
+  public long getReads() {
+    return reads.sum();
+  }
+
+  public double elapsedSeconds() {
+    return (System.nanoTime() - startNanos) / 1e9;
+  }
+
+  /**
+   * @return benchmarks logging current throughput and stage latencies, to be reported
+   * periodically by a {@link CompositeBenchmarkImpl}.
+   */
+  public PrintStreamBenchmark[] benchmarks() {
+    PrintStreamBenchmark[] benchmarks = new PrintStreamBenchmark[3 + stages.size()];
+    benchmarks[0] = new PrintStreamBenchmark("reads", () -> String.format(Locale.ROOT,
+        "%d (%.0f/s, %d mapped)", reads.sum(), reads.sum() / elapsedSeconds(),
+        mappedReads.sum()));
+    benchmarks[1] = new PrintStreamBenchmark("bases/s", () -> String.format(Locale.ROOT,
+        "%.3g", bases.sum() / elapsedSeconds()));
+    benchmarks[2] = new PrintStreamBenchmark("per read", () -> String.format(Locale.ROOT,
+        "%.1f hits, %.2f regions", perRead(hits), perRead(candidateRegions)));
+
+    int i = 3;
+    for (Stage stage : Stage.values()) {
+      LatencyHistogram histogram = stages.get(stage);
+      benchmarks[i++] = new PrintStreamBenchmark(stage.label, () -> String.format(Locale.ROOT,
+          "%.1fs total, p50 %.3fms, p99 %.3fms",
+          histogram.sum() / 1e9,
+          histogram.percentile(50) / 1e6,
+          histogram.percentile(99) / 1e6));
+    }
+
+    return benchmarks;
+  }
+
+  /**
+   * Logs a single line summary of all benchmarks.
+   */
+  public void log(PrintStream out) {
+    new CompositeBenchmarkImpl(out, benchmarks()).run();
+  }
+
+  /**
+   * Writes all metrics to a JSON file.
+   */
+  public void writeJson(Path path) throws IOException {
+    try (Writer out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+      double seconds = elapsedSeconds();
+      out.write(String.format(Locale.ROOT, "{\n"
+              + "  \"elapsedSeconds\": %.3f,\n"
+              + "  \"reads\": %d,\n"
+              + "  \"mappedReads\": %d,\n"
+              + "  \"bases\": %d,\n"
+              + "  \"readsPerSecond\": %.3f,\n"
+              + "  \"basesPerSecond\": %.3f,\n"
+              + "  \"hitsPerRead\": %.3f,\n"
+              + "  \"candidateRegionsPerRead\": %.3f,\n"
+              + "  \"stages\": {",
+          seconds, reads.sum(), mappedReads.sum(), bases.sum(), reads.sum() / seconds,
+          bases.sum() / seconds, perRead(hits), perRead(candidateRegions)));
+
+      String separator = "\n";
+      for (Stage stage : Stage.values()) {
+        LatencyHistogram histogram = stages.get(stage);
+        out.write(String.format(Locale.ROOT, "%s    \"%s\": {\"count\": %d, \"totalMillis\": %.3f, "
+                + "\"meanMicros\": %.3f, \"p50Micros\": %.3f, \"p90Micros\": %.3f, "
+                + "\"p99Micros\": %.3f, \"maxMicros\": %.3f}",
+            separator, stage.label, histogram.count(), histogram.sum() / 1e6,
+            histogram.mean() / 1e3, micros(histogram.percentile(50)),
+            micros(histogram.percentile(90)), micros(histogram.percentile(99)),
+            micros(histogram.max())));
+        separator = ",\n";
+      }
+
+      out.write("\n  }\n}\n");
+    }
+  }
+
+  private double perRead(LongAdder counter) {
+    long count = reads.sum();
+    return count == 0 ? 0 : (double) counter.sum() / count;
+  }
+
+  private static double micros(long nanos) {
+    return nanos / (double) TimeUnit.MICROSECONDS.toNanos(1);
+  }
+}
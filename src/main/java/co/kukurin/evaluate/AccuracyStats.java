@@ -0,0 +1,55 @@
+package co.kukurin.evaluate;
+
+import java.util.Optional;
+import lombok.Getter;
+
+/**
+ * Scores predicted mappings of simulated reads against their true origin.
+ *
+ * <p>A mapping is correct if it lies on the true sequence and overlaps the true interval by at
+ * least {@code minOverlap} of the shorter of the two. Precision is the fraction of mapped reads
+ * mapped correctly, recall the fraction of all reads mapped correctly. Identity error is the mean
+ * absolute difference between estimated and simulated identity over correctly mapped reads. Each
+ * ratio is NaN while its denominator is zero, e.g. precision if no read was mapped, so that it is
+ * not mistaken for a measured value.
+ */
+@Getter
+public class AccuracyStats {
+
+  private final double minOverlap;
+  private int reads;
+  private int mapped;
+  private int correct;
+  private double identityErrorSum;
+
+  public AccuracyStats(double minOverlap) {
+    this.minOverlap = minOverlap;
+  }
+
+  public void add(WgsimTruth truth, int readLength, Optional<PredictedMapping> mapping) {
+    reads++;
+    if (!mapping.isPresent()) {
+      return;
+    }
+
+    mapped++;
+    PredictedMapping value = mapping.get();
+    int shorter = Math.min(value.getEnd() - value.getStart(), truth.getEnd() - truth.getStart());
+    if (value.overlap(truth) >= minOverlap * shorter) {
+      correct++;
+      identityErrorSum += Math.abs(value.getIdentity() - truth.identity(readLength));
+    }
+  }
+
+  public double precision() {
+    return mapped == 0 ? Double.NaN : (double) correct / mapped;
+  }
+
+  public double recall() {
+    return reads == 0 ? Double.NaN : (double) correct / reads;
+  }
+
+  public double meanIdentityError() {
+    return correct == 0 ? Double.NaN : identityErrorSum / correct;
+  }
+}
@@ -0,0 +1,43 @@
+package co.kukurin.evaluate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reader of MashMap output: {@code query length start end strand reference length start end
+ * identity ...}, space separated, with identity in percent.
+ */
+public class MashMapOutput {
+
+  private MashMapOutput() {
+  }
+
+  /**
+   * @return best (highest identity) mapping of every query name in given output file.
+   */
+  public static Map<String, PredictedMapping> read(Path path) throws IOException {
+    Map<String, PredictedMapping> mappings = new HashMap<>();
+    try (BufferedReader reader = Files.newBufferedReader(path)) {
+      for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+        String[] fields = line.trim().split("\\s+");
+        if (fields.length < 10) {
+          continue;
+        }
+
+        PredictedMapping mapping = new PredictedMapping(
+            fields[5],
+            Integer.parseInt(fields[7]),
+            Integer.parseInt(fields[8]) + 1,
+            fields[4].equals("-"),
+            Double.parseDouble(fields[9]) / 100);
+        mappings.merge(fields[0], mapping,
+            (first, second) -> first.getIdentity() >= second.getIdentity() ? first : second);
+      }
+    }
+    return mappings;
+  }
+}
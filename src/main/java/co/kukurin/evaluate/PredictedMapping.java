@@ -0,0 +1,34 @@
+package co.kukurin.evaluate;
+
+import co.kukurin.map.ReadMapper.ReadMapperResult;
+import lombok.Value;
+
+/**
+ * A mapping reported by a mapper under evaluation, as a reference interval.
+ */
+@Value
+public class PredictedMapping {
+
+  private String sequenceName;
+  // 0-based, inclusive
+  private int start;
+  // 0-based, exclusive
+  private int end;
+  private boolean reverseStrand;
+  private double identity;
+
+  public static PredictedMapping of(ReadMapperResult result, int queryLength) {
+    return new PredictedMapping(result.getSequenceName(), result.getIndex(),
+        result.targetEnd(queryLength), result.isReverseStrand(), result.getNucIdentity());
+  }
+
+  /**
+   * @return number of reference bases covered by both this mapping and given truth.
+   */
+  public int overlap(WgsimTruth truth) {
+    if (!sequenceName.equals(truth.getSequenceName())) {
+      return 0;
+    }
+    return Math.max(0, Math.min(end, truth.getEnd()) - Math.max(start, truth.getStart()));
+  }
+}
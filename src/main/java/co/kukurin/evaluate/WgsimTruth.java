@@ -0,0 +1,56 @@
+package co.kukurin.evaluate;
+
+import java.util.Arrays;
+import java.util.Optional;
+import lombok.Value;
+
+/**
+ * True origin of a read simulated by wgsim, encoded in read names as {@code
+ * <sequence>_<start>_<end>_<errors1>:<substitutions1>:<indels1>_<errors2>:..._<index>/<mate>}
+ * with 1-based inclusive fragment coordinates.
+ */
+@Value
+public class WgsimTruth {
+
+  private static final int COORDINATE_FIELDS = 5;
+
+  private String sequenceName;
+  // 0-based, inclusive
+  private int start;
+  // 0-based, exclusive
+  private int end;
+  // sequencing errors, substitutions and indels introduced into the first read of the pair
+  private int differences;
+
+  /**
+   * @return truth encoded in given read name, or empty if it was not simulated by wgsim. Sequence
+   * names may themselves contain underscores, so fields are taken from the right.
+   */
+  public static Optional<WgsimTruth> parse(String readName) {
+    String[] fields = readName.split("_");
+    if (fields.length <= COORDINATE_FIELDS) {
+      return Optional.empty();
+    }
+
+    int first = fields.length - COORDINATE_FIELDS;
+    String sequenceName = String.join("_", Arrays.copyOf(fields, first));
+    try {
+      int start = Integer.parseInt(fields[first]) - 1;
+      int end = Integer.parseInt(fields[first + 1]);
+      int differences = 0;
+      for (String count : fields[first + 2].split(":")) {
+        differences += Integer.parseInt(count);
+      }
+      return Optional.of(new WgsimTruth(sequenceName, start, end, differences));
+    } catch (NumberFormatException e) {
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * @return fraction of bases of a read of given length not affected by simulated differences.
+   */
+  public double identity(int readLength) {
+    return Math.max(0, 1 - (double) differences / readLength);
+  }
+}
@@ -0,0 +1,213 @@
+package co.kukurin.fasta;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Decompressing channel over a BGZF file (a series of independent gzip members of at most 64 KB,
+ * whose size is recorded in the {@code BC} extra field), as written by {@code bgzip}.
+ *
+ * <p>Compressed blocks are read sequentially and inflated on a pool of worker threads; up to
+ * {@code 4 * threads} blocks are in flight, and their contents are returned in file order.
+ */
+public class BgzfChannel implements ReadableByteChannel {
+
+  private static final int BLOCK_HEADER_BYTES = 12;
+  private static final int BLOCK_TRAILER_BYTES = 8;
+  private static final ThreadLocal<Inflater> INFLATER =
+      ThreadLocal.withInitial(() -> new Inflater(/*nowrap=*/ true));
+
+  private final ReadableByteChannel source;
+  private final ExecutorService inflaters;
+  private final Deque<Future<ByteBuffer>> pending = new ArrayDeque<>();
+  private final int maxPending;
+  private final ByteBuffer header =
+      ByteBuffer.allocate(BLOCK_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+  private ByteBuffer current = ByteBuffer.allocate(0);
+  private boolean endOfSource;
+  private boolean open = true;
+
+  public BgzfChannel(ReadableByteChannel source, int threads) {
+    AtomicInteger counter = new AtomicInteger();
+    this.source = source;
+    this.maxPending = 4 * threads;
+    this.inflaters = Executors.newFixedThreadPool(threads, runnable -> {
+      Thread thread = new Thread(runnable, "bgzf-inflater-" + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * @return true if given bytes (at least 16) start a BGZF block.
+   */
+  static boolean isBgzfHeader(ByteBuffer bytes) {
+    ByteBuffer block = bytes.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    return block.remaining() >= 16
+        && (block.get(0) & 0xff) == 0x1f
+        && (block.get(1) & 0xff) == 0x8b
+        && block.get(2) == 8
+        && (block.get(3) & 4) != 0
+        && block.get(12) == 'B'
+        && block.get(13) == 'C'
+        && block.getShort(14) == 2;
+  }
+
+  @Override
+  public int read(ByteBuffer destination) throws IOException {
+    while (!current.hasRemaining()) {
+      submitBlocks();
+      if (pending.isEmpty()) {
+        return -1;
+      }
+      current = take(pending.poll());
+    }
+
+    int length = Math.min(destination.remaining(), current.remaining());
+    ByteBuffer chunk = current.duplicate();
+    chunk.limit(chunk.position() + length);
+    destination.put(chunk);
+    current.position(current.position() + length);
+    return length;
+  }
+
+  @Override
+  public boolean isOpen() {
+    return open;
+  }
+
+  @Override
+  public void close() throws IOException {
+    open = false;
+    inflaters.shutdownNow();
+    source.close();
+  }
+
+  private void submitBlocks() throws IOException {
+    while (!endOfSource && pending.size() < maxPending) {
+      byte[] block = readBlock();
+      if (block == null) {
+        endOfSource = true;
+      } else {
+        pending.add(inflaters.submit(() -> inflate(block)));
+      }
+    }
+  }
+
+  /**
+   * @return next compressed block, or null at the end of the source.
+   */
+  private byte[] readBlock() throws IOException {
+    header.clear();
+    if (!readFully(header) && header.position() == 0) {
+      return null;
+    }
+
+    if (header.hasRemaining()
+        || (header.get(0) & 0xff) != 0x1f
+        || (header.get(1) & 0xff) != 0x8b
+        || (header.get(3) & 4) == 0) {
+      throw new IOException("Corrupt BGZF block header");
+    }
+
+    int extraLength = header.getShort(10) & 0xffff;
+    ByteBuffer extra = ByteBuffer.allocate(extraLength).order(ByteOrder.LITTLE_ENDIAN);
+    if (!readFully(extra)) {
+      throw new EOFException("Truncated BGZF block");
+    }
+
+    int blockSize = blockSize(extra);
+    ByteBuffer block = ByteBuffer.allocate(blockSize);
+    block.put(header.array()).put(extra.array());
+    if (!readFully(block)) {
+      throw new EOFException("Truncated BGZF block");
+    }
+
+    return block.array();
+  }
+
+  private static int blockSize(ByteBuffer extra) throws IOException {
+    for (int i = 0; i + 4 <= extra.capacity(); i += 4 + (extra.getShort(i + 2) & 0xffff)) {
+      if (extra.get(i) == 'B' && extra.get(i + 1) == 'C' && extra.getShort(i + 2) == 2) {
+        return (extra.getShort(i + 4) & 0xffff) + 1;
+      }
+    }
+
+    throw new IOException("BGZF block without BC field");
+  }
+
+  private static ByteBuffer inflate(byte[] block) throws IOException {
+    ByteBuffer trailer = ByteBuffer.wrap(block, block.length - BLOCK_TRAILER_BYTES,
+        BLOCK_TRAILER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    int expectedCrc = trailer.getInt();
+    int uncompressedSize = trailer.getInt();
+    int dataOffset = BLOCK_HEADER_BYTES + ((block[10] & 0xff) | (block[11] & 0xff) << 8);
+
+    byte[] uncompressed = new byte[uncompressedSize];
+    Inflater inflater = INFLATER.get();
+    inflater.reset();
+    inflater.setInput(block, dataOffset, block.length - BLOCK_TRAILER_BYTES - dataOffset);
+    try {
+      int inflated = 0;
+      while (inflated < uncompressedSize && !inflater.finished()) {
+        int count = inflater.inflate(uncompressed, inflated, uncompressedSize - inflated);
+        if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        inflated += count;
+      }
+
+      if (inflated != uncompressedSize) {
+        throw new IOException("Corrupt BGZF block, inflated " + inflated + " of "
+            + uncompressedSize + " bytes");
+      }
+    } catch (DataFormatException e) {
+      throw new IOException("Corrupt BGZF block", e);
+    }
+
+    CRC32 crc = new CRC32();
+    crc.update(uncompressed);
+    if ((int) crc.getValue() != expectedCrc) {
+      throw new IOException("BGZF block checksum mismatch");
+    }
+
+    return ByteBuffer.wrap(uncompressed);
+  }
+
+  private static ByteBuffer take(Future<ByteBuffer> block) throws IOException {
+    try {
+      return block.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while inflating", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+    }
+  }
+
+  /**
+   * @return false if the source ended before the buffer was filled.
+   */
+  private boolean readFully(ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (source.read(buffer) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,144 @@
+package co.kukurin.fasta;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Line oriented scanning over blocks read from a {@link ReadableByteChannel}; the shared base of
+ * the sequence file readers.
+ */
+abstract class ChannelLineReader implements RecordSource {
+
+  static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+  private final ReadableByteChannel channel;
+  final ByteBuffer buffer;
+  boolean atLineStart = true;
+  private byte[] lineBytes = new byte[256];
+  private boolean endOfInput;
+
+  /**
+   * @param buffer read buffer, flipped for reading; bytes it already holds are consumed first.
+   */
+  ChannelLineReader(ReadableByteChannel channel, ByteBuffer buffer) {
+    this.channel = channel;
+    this.buffer = buffer;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /**
+   * Ensures the buffer has remaining bytes, reading the next block if needed.
+   *
+   * @return false if the input is exhausted.
+   */
+  boolean fill() throws IOException {
+    if (buffer.hasRemaining()) {
+      return true;
+    }
+
+    if (endOfInput) {
+      return false;
+    }
+
+    buffer.clear();
+    int read = 0;
+    while (read == 0) {
+      read = channel.read(buffer);
+    }
+    buffer.flip();
+
+    endOfInput = read < 0;
+    return !endOfInput;
+  }
+
+  /**
+   * @return unsigned value of the next byte, without consuming it. Buffer must have remaining
+   * bytes.
+   */
+  int peek() {
+    return buffer.get(buffer.position()) & 0xff;
+  }
+
+  /**
+   * Consumes a single whitespace byte.
+   */
+  void skipWhitespace() {
+    atLineStart = buffer.get() == '\n';
+  }
+
+  /**
+   * Consumes bytes up to and including the next line break.
+   */
+  void skipLine() throws IOException {
+    while (fill()) {
+      int position = buffer.position();
+      while (position < buffer.limit() && buffer.get(position) != '\n') {
+        position++;
+      }
+
+      if (position < buffer.limit()) {
+        buffer.position(position + 1);
+        break;
+      }
+      buffer.position(position);
+    }
+
+    atLineStart = true;
+  }
+
+  /**
+   * Reads bytes up to and including the next line break.
+   *
+   * @return line contents without the line break.
+   */
+  String readLine() throws IOException {
+    int length = 0;
+
+    while (fill()) {
+      int position = buffer.position();
+      int end = position;
+      while (end < buffer.limit() && buffer.get(end) != '\n') {
+        end++;
+      }
+
+      if (lineBytes.length < length + end - position) {
+        lineBytes = Arrays.copyOf(lineBytes, 2 * (length + end - position));
+      }
+      buffer.get(lineBytes, length, end - position);
+      length += end - position;
+
+      if (end < buffer.limit()) {
+        buffer.position(end + 1);
+        break;
+      }
+    }
+
+    atLineStart = true;
+    return new String(lineBytes, 0, length, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Copies the run of non-whitespace bytes at the buffer position, at most {@code length} bytes.
+   *
+   * @return number of bytes copied.
+   */
+  int copyRun(byte[] destination, int offset, int length) {
+    int position = buffer.position();
+    int end = position + 1;
+    int max = Math.min(buffer.limit(), position + length);
+    while (end < max && (buffer.get(end) & 0xff) > ' ') {
+      end++;
+    }
+
+    buffer.get(destination, offset, end - position);
+    atLineStart = false;
+    return end - position;
+  }
+}
@@ -0,0 +1,213 @@
+package co.kukurin.fasta;
+
+import co.kukurin.hash.KmerHasher;
+import co.kukurin.hash.KmerSource;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Byte oriented FASTA reader over a {@link ReadableByteChannel}.
+ *
+ * <p>Input is read in large blocks into a direct buffer. Sequence lines are scanned for the next
+ * whitespace byte and copied out in bulk, so no per-base decoding or stream bookkeeping takes
+ * place. Lines starting with {@code ;} are comments and are skipped wherever they occur; blank
+ * lines and {@code \r\n} line endings are handled.
+ *
+ * <p>A header is a single line of any length, which may span multiple buffer blocks. FASTA has no
+ * header continuation lines: a line starting with {@code >} always starts a new record, and
+ * {@code ;} lines following a header, used for further description in the old Pearson format, are
+ * skipped as comments rather than appended to it.
+ *
+ * <p>Records are either read fully into memory with {@link #nextRecord()}, or streamed by calling
+ * {@link #nextHeader()} followed by {@link #readBases(byte[], int, int)} or {@link
+ * #kmers(int)}.
+ */
+public class FastaChannelReader extends ChannelLineReader {
+
+  private static final int INITIAL_RECORD_CAPACITY = 1 << 12;
+  private static final int KMER_CHUNK_SIZE = 1 << 16;
+
+  /**
+   * Streams k-mers of the current record, see {@link #kmers(int)}.
+   */
+  public class RecordKmers implements KmerSource {
+
+    private final KmerHasher kmerHasher;
+    private final int kmerSize;
+    private final byte[] chunk = new byte[KMER_CHUNK_SIZE];
+    private int chunkPosition;
+    private int chunkLength;
+    private int length;
+
+    private RecordKmers(int kmerSize) {
+      this.kmerHasher = new KmerHasher(kmerSize);
+      this.kmerSize = kmerSize;
+    }
+
+    @Override
+    public boolean nextKmer() throws IOException {
+      while (true) {
+        if (chunkPosition == chunkLength) {
+          chunkLength = readBases(chunk, 0, chunk.length);
+          chunkPosition = 0;
+          if (chunkLength < 0) {
+            chunkLength = 0;
+            return false;
+          }
+        }
+
+        length++;
+        if (kmerHasher.push(chunk[chunkPosition++])) {
+          return true;
+        }
+      }
+    }
+
+    @Override
+    public long kmerHash() {
+      return kmerHasher.hash();
+    }
+
+    @Override
+    public byte kmerStrand() {
+      return kmerHasher.strand();
+    }
+
+    @Override
+    public int kmerPosition() {
+      return length - kmerSize;
+    }
+
+    /**
+     * @return number of bases consumed so far; the record length once k-mers are exhausted.
+     */
+    public int getLength() {
+      return length;
+    }
+  }
+
+  private boolean inRecord;
+
+  public FastaChannelReader(ReadableByteChannel channel) {
+    this(channel, DEFAULT_BUFFER_SIZE);
+  }
+
+  public FastaChannelReader(ReadableByteChannel channel, int bufferSize) {
+    this(channel, (ByteBuffer) ByteBuffer.allocateDirect(bufferSize).flip());
+  }
+
+  FastaChannelReader(ReadableByteChannel channel, ByteBuffer buffer) {
+    super(channel, buffer);
+  }
+
+  /**
+   * Skips what is left of the current record and reads the next header.
+   *
+   * @return header without the leading {@code >}, or empty if the input is exhausted.
+   * @throws IOException if the input is not in FASTA format.
+   */
+  public Optional<String> nextHeader() throws IOException {
+    skipBases();
+
+    while (fill()) {
+      int value = peek();
+
+      if (atLineStart && value == '>') {
+        buffer.get();
+        inRecord = true;
+        return Optional.of(readLine().trim());
+      }
+
+      if (atLineStart && value == ';') {
+        skipLine();
+      } else if (value <= ' ') {
+        skipWhitespace();
+      } else {
+        throw new IOException("Bad file format, expected '>' at start of a record");
+      }
+    }
+
+    return Optional.empty();
+  }
+
+  /**
+   * Copies up to {@code length} bases of the current record, skipping line breaks and comments.
+   *
+   * @return number of bases copied, or -1 if the current record has no bases left.
+   */
+  public int readBases(byte[] destination, int offset, int length) throws IOException {
+    int copied = 0;
+
+    while (copied < length && inRecord) {
+      if (!fill()) {
+        inRecord = false;
+        break;
+      }
+
+      int value = peek();
+
+      if (atLineStart && value == '>') {
+        inRecord = false;
+      } else if (atLineStart && value == ';') {
+        skipLine();
+      } else if (value <= ' ') {
+        skipWhitespace();
+      } else {
+        copied += copyRun(destination, offset + copied, length - copied);
+      }
+    }
+
+    return copied == 0 && !inRecord ? -1 : copied;
+  }
+
+  /**
+   * @return source of k-mers of the current record. It must be exhausted or abandoned before the
+   * next call to {@link #nextHeader()}.
+   */
+  public RecordKmers kmers(int kmerSize) {
+    return new RecordKmers(kmerSize);
+  }
+
+  /**
+   * Reads the next sequence fully into memory.
+   */
+  @Override
+  public Optional<SequenceRecord> nextRecord() throws IOException {
+    Optional<String> header = nextHeader();
+    if (!header.isPresent()) {
+      return Optional.empty();
+    }
+
+    byte[] bases = new byte[INITIAL_RECORD_CAPACITY];
+    int length = 0;
+    for (int read = readBases(bases, 0, bases.length);
+        read >= 0;
+        read = readBases(bases, length, bases.length - length)) {
+      length += read;
+      if (length == bases.length) {
+        bases = Arrays.copyOf(bases, length * 2);
+      }
+    }
+
+    return Optional.of(new SequenceRecord(header.get(), bases, length));
+  }
+
+  private void skipBases() throws IOException {
+    while (inRecord) {
+      if (!fill()) {
+        inRecord = false;
+        return;
+      }
+
+      if (atLineStart && peek() == '>') {
+        inRecord = false;
+      } else {
+        // the rest of a sequence or comment line
+        skipLine();
+      }
+    }
+  }
+}
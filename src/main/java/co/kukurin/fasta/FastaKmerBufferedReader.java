@@ -1,10 +1,13 @@
 package co.kukurin.fasta;
 
+import co.kukurin.hash.KmerHasher;
+import co.kukurin.hash.KmerSource;
 import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.UncheckedIOException;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Optional;
 import lombok.Getter;
@@ -14,8 +17,13 @@ import lombok.Getter;
  *
  * <p>Reader returns {@link KmerSequenceGenerator} instances on each new invocation of the {@link
  * #next()} method.
+ *
+ * <p>Decodes input one character at a time; {@link FastaChannelReader} should be preferred for
+ * reading files.
  */
-public class FastaKmerBufferedReader implements AutoCloseable {
+public class FastaKmerBufferedReader implements RecordSource {
+
+  private static final int INITIAL_RECORD_CAPACITY = 1 << 12;
 
   private static final Iterator<Character> EMPTY_ITERATOR = new Iterator<Character>() {
     @Override
@@ -36,7 +44,7 @@ public class FastaKmerBufferedReader implements AutoCloseable {
    *
    * <ol> <li>(A, A)</li> <li>(A, T)</li> </ol>
    */
-  public class KmerSequenceGenerator {
+  public class KmerSequenceGenerator implements KmerSource {
 
     @Getter
     private String header;
@@ -48,6 +56,74 @@ public class FastaKmerBufferedReader implements AutoCloseable {
       this.header = header;
       this.totalReadBytes = 0;
       this.valuesIter = -1;
+      kmerHasher.reset();
+    }
+
+    /**
+     * @return sequence name, i.e. the header up to the first whitespace character.
+     */
+    public String getName() {
+      return SequenceRecord.nameOf(header);
+    }
+
+    /**
+     * Reads the remaining bases of the sequence into memory.
+     */
+    public SequenceRecord readRecord() throws IOException {
+      byte[] bases = new byte[INITIAL_RECORD_CAPACITY];
+      int length = 0;
+
+      for (int readValue = nextNonWhitespace(); readValue != -1; readValue = nextNonWhitespace()) {
+        if (readValue == '>') {
+          bufferedReader.reset();
+          break;
+        }
+
+        if (length == bases.length) {
+          bases = Arrays.copyOf(bases, length * 2);
+        }
+        bases[length++] = (byte) readValue;
+      }
+
+      totalReadBytes += length;
+      return new SequenceRecord(header, bases, length);
+    }
+
+    /**
+     * Advances to the next valid k-mer, rolling each read base through a {@link KmerHasher}.
+     *
+     * @return false if there are no more k-mers in the sequence.
+     */
+    @Override
+    public boolean nextKmer() throws IOException {
+      for (int readValue = nextNonWhitespace(); readValue != -1; readValue = nextNonWhitespace()) {
+        if (readValue == '>') {
+          bufferedReader.reset();
+          return false;
+        }
+
+        totalReadBytes++;
+        if (kmerHasher.push(readValue)) {
+          return true;
+        }
+      }
+
+      return false;
+    }
+
+    @Override
+    public long kmerHash() {
+      return kmerHasher.hash();
+    }
+
+    @Override
+    public byte kmerStrand() {
+      return kmerHasher.strand();
+    }
+
+    @Override
+    public int kmerPosition() {
+      return totalReadBytes - kmerSize;
     }
 
     /**
@@ -113,10 +189,12 @@ public class FastaKmerBufferedReader implements AutoCloseable {
   }
 
   private final BufferedReader bufferedReader;
+  private final KmerHasher kmerHasher;
   private final int kmerSize;
 
   public FastaKmerBufferedReader(Reader reader, int kmerSize) throws FileNotFoundException {
     this.bufferedReader = new BufferedReader(reader);
+    this.kmerHasher = new KmerHasher(kmerSize);
     this.kmerSize = kmerSize;
   }
 
@@ -145,8 +223,19 @@ public class FastaKmerBufferedReader implements AutoCloseable {
     }
   }
 
+  /**
+   * Reads the next sequence fully into memory.
+   */
+  @Override
+  public Optional<SequenceRecord> nextRecord() throws IOException {
+    Optional<KmerSequenceGenerator> generator = next();
+    return generator.isPresent()
+        ? Optional.of(generator.get().readRecord())
+        : Optional.empty();
+  }
+
   @Override
-  public void close() throws Exception {
+  public void close() throws IOException {
     this.bufferedReader.close();
   }
 
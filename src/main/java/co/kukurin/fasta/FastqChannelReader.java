@@ -0,0 +1,118 @@
+package co.kukurin.fasta;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Byte oriented FASTQ reader over a {@link ReadableByteChannel}.
+ *
+ * <p>Sequences may span multiple lines, and end at the line starting with {@code +}. Quality
+ * values are skipped by counting as many non-whitespace bytes as the sequence has bases, so they
+ * are never copied out of the read buffer (and may start with {@code @}).
+ */
+public class FastqChannelReader extends ChannelLineReader {
+
+  private static final int INITIAL_RECORD_CAPACITY = 1 << 12;
+
+  public FastqChannelReader(ReadableByteChannel channel) {
+    this(channel, DEFAULT_BUFFER_SIZE);
+  }
+
+  public FastqChannelReader(ReadableByteChannel channel, int bufferSize) {
+    this(channel, (ByteBuffer) ByteBuffer.allocateDirect(bufferSize).flip());
+  }
+
+  FastqChannelReader(ReadableByteChannel channel, ByteBuffer buffer) {
+    super(channel, buffer);
+  }
+
+  /**
+   * Reads the next sequence fully into memory.
+   *
+   * @throws IOException if the input is not in FASTQ format.
+   */
+  @Override
+  public Optional<SequenceRecord> nextRecord() throws IOException {
+    if (!skipToHeader()) {
+      return Optional.empty();
+    }
+
+    buffer.get();
+    String header = readLine().trim();
+
+    byte[] bases = new byte[INITIAL_RECORD_CAPACITY];
+    int length = 0;
+    while (true) {
+      if (!fill()) {
+        throw new IOException("Truncated FASTQ record " + header);
+      }
+
+      int value = peek();
+      if (atLineStart && value == '+') {
+        skipLine();
+        break;
+      }
+
+      if (value <= ' ') {
+        skipWhitespace();
+        continue;
+      }
+
+      if (length == bases.length) {
+        bases = Arrays.copyOf(bases, length * 2);
+      }
+      length += copyRun(bases, length, bases.length - length);
+    }
+
+    skipQuality(length, header);
+    return Optional.of(new SequenceRecord(header, bases, length));
+  }
+
+  /**
+   * @return false if the input is exhausted before the next header.
+   */
+  private boolean skipToHeader() throws IOException {
+    while (fill()) {
+      int value = peek();
+
+      if (atLineStart && value == '@') {
+        return true;
+      }
+
+      if (value > ' ') {
+        throw new IOException("Bad file format, expected '@' at start of a record");
+      }
+      skipWhitespace();
+    }
+
+    return false;
+  }
+
+  private void skipQuality(int length, String header) throws IOException {
+    int remaining = length;
+
+    while (remaining > 0) {
+      if (!fill()) {
+        throw new IOException("Truncated FASTQ record " + header);
+      }
+
+      int position = buffer.position();
+      int end = position;
+      int max = Math.min(buffer.limit(), position + remaining);
+      while (end < max && (buffer.get(end) & 0xff) > ' ') {
+        end++;
+      }
+
+      if (end == position) {
+        skipWhitespace();
+      } else {
+        buffer.position(end);
+        remaining -= end - position;
+        atLineStart = false;
+      }
+    }
+  }
+}
@@ -0,0 +1,18 @@
+package co.kukurin.fasta;
+
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Source of whole sequence records.
+ */
+public interface RecordSource extends AutoCloseable {
+
+  /**
+   * @return next record, or empty if the source is exhausted.
+   */
+  Optional<SequenceRecord> nextRecord() throws IOException;
+
+  @Override
+  void close() throws IOException;
+}
@@ -0,0 +1,79 @@
+package co.kukurin.fasta;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Opens sequence files regardless of their format: FASTA or FASTQ, either plain, gzip or BGZF
+ * compressed. Formats are detected from file contents, not names.
+ */
+public class SequenceFiles {
+
+  private static final int GZIP_BUFFER_SIZE = 1 << 16;
+  private static final int SNIFF_BYTES = 16;
+
+  private SequenceFiles() {
+  }
+
+  /**
+   * @param threads number of threads used to decompress BGZF files.
+   * @return channel of the (decompressed) file contents.
+   */
+  public static ReadableByteChannel openChannel(Path path, int threads) throws IOException {
+    FileChannel file = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      ByteBuffer head = ByteBuffer.allocate(SNIFF_BYTES);
+      file.read(head, 0);
+      head.flip();
+
+      if (BgzfChannel.isBgzfHeader(head)) {
+        return new BgzfChannel(file, threads);
+      }
+
+      if (head.remaining() >= 2 && (head.get(0) & 0xff) == 0x1f && (head.get(1) & 0xff) == 0x8b) {
+        return Channels.newChannel(
+            new GZIPInputStream(Channels.newInputStream(file), GZIP_BUFFER_SIZE));
+      }
+
+      return file;
+    } catch (IOException | RuntimeException e) {
+      file.close();
+      throw e;
+    }
+  }
+
+  /**
+   * @param threads number of threads used to decompress BGZF files.
+   * @return FASTQ reader if the first record starts with {@code @}, FASTA reader otherwise.
+   */
+  public static RecordSource openRecords(Path path, int threads) throws IOException {
+    return openRecords(openChannel(path, threads));
+  }
+
+  /**
+   * @param channel uncompressed FASTA or FASTQ contents, read up to the first record to detect
+   * the format.
+   * @return FASTQ reader if the first record starts with {@code @}, FASTA reader otherwise.
+   */
+  public static RecordSource openRecords(ReadableByteChannel channel) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(ChannelLineReader.DEFAULT_BUFFER_SIZE);
+
+    int first = -1;
+    while (first < 0 && buffer.hasRemaining() && channel.read(buffer) >= 0) {
+      for (int i = 0; i < buffer.position() && first < 0; i++) {
+        first = (buffer.get(i) & 0xff) > ' ' ? buffer.get(i) : -1;
+      }
+    }
+    buffer.flip();
+
+    return first == '@'
+        ? new FastqChannelReader(channel, buffer)
+        : new FastaChannelReader(channel, buffer);
+  }
+}
@@ -0,0 +1,39 @@
+package co.kukurin.fasta;
+
+import lombok.Getter;
+
+/**
+ * A sequence read fully into memory. Only the first {@link #getLength()} bytes of {@link
+ * #getBases()} are valid.
+ */
+@Getter
+public class SequenceRecord {
+
+  private final String header;
+  private final byte[] bases;
+  private final int length;
+
+  public SequenceRecord(String header, byte[] bases, int length) {
+    this.header = header;
+    this.bases = bases;
+    this.length = length;
+  }
+
+  /**
+   * @return sequence name, i.e. the header up to the first whitespace character.
+   */
+  public String getName() {
+    return nameOf(header);
+  }
+
+  /**
+   * @return given header up to the first whitespace character.
+   */
+  public static String nameOf(String header) {
+    int end = 0;
+    while (end < header.length() && !Character.isWhitespace(header.charAt(end))) {
+      end++;
+    }
+    return header.substring(0, end);
+  }
+}
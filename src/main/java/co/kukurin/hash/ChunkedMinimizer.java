@@ -0,0 +1,154 @@
+package co.kukurin.hash;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Minimizes sequences in parallel, producing the same minimizers as {@link Minimizer} applied to
+ * each sequence in turn.
+ *
+ * <p>Bases are streamed in with {@link #add(byte[], int, int)} and cut into chunks, each minimized
+ * on the executor. A chunk starts {@code (max(windowSize, 2) - 2) + (kmerSize - 1)} bases before
+ * the end of the previous one: the k-mers in the overlap fill the first window of the chunk, so
+ * every window is evaluated whole in exactly one chunk, and the first window the chunk emits ends
+ * right after the last one of the previous chunk. Chunk results are appended in input order; a
+ * minimizer spanning the seam is found by both chunks and kept once.
+ *
+ * <p>Instances are not thread safe.
+ */
+public class ChunkedMinimizer {
+
+  public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+  private static final int INITIAL_CHUNK_CAPACITY = 1 << 12;
+
+  private final Minimizer minimizer;
+  private final int kmerSize;
+  private final int chunkSize;
+  private final int overlap;
+  private final Executor executor;
+  private final int maxPending;
+  private final Deque<CompletableFuture<MinimizerArray>> pending = new ArrayDeque<>();
+  private final MinimizerArray minimizers = new MinimizerArray();
+  private byte[] chunk;
+  private int chunkLength;
+  // global position of the first base in the chunk
+  private int chunkOffset;
+  private boolean firstChunk;
+  private int sequenceLength;
+
+  public ChunkedMinimizer(int kmerSize, int windowSize, long hashThreshold, Executor executor,
+      int parallelism) {
+    this(kmerSize, windowSize, hashThreshold, DEFAULT_CHUNK_SIZE, executor, 2 * parallelism);
+  }
+
+  /**
+   * @param hashThreshold see {@link Minimizer#Minimizer(int, long)}.
+   * @param maxPending number of chunks minimized or waiting to be merged at any time; adding bases
+   * blocks while there are more.
+   */
+  public ChunkedMinimizer(int kmerSize, int windowSize, long hashThreshold, int chunkSize,
+      Executor executor, int maxPending) {
+    this.minimizer = new Minimizer(windowSize, hashThreshold);
+    this.kmerSize = kmerSize;
+    this.chunkSize = chunkSize;
+    // Minimizer emits from the first k-mer on for windows of 1 as for windows of 2
+    this.overlap = Math.max(windowSize, 2) - 2 + kmerSize - 1;
+    this.executor = executor;
+    this.maxPending = Math.max(1, maxPending);
+
+    if (chunkSize <= overlap) {
+      throw new IllegalArgumentException(String.format(
+          "Chunk size %d must exceed the overlap of %d bases", chunkSize, overlap));
+    }
+  }
+
+  /**
+   * Starts a sequence laid out at given global position.
+   */
+  public void startSequence(int offset) {
+    // grown up to the chunk size, so short sequences stay cheap
+    chunk = new byte[Math.min(chunkSize, INITIAL_CHUNK_CAPACITY)];
+    chunkLength = 0;
+    chunkOffset = offset;
+    firstChunk = true;
+    sequenceLength = 0;
+  }
+
+  /**
+   * Appends bases of the current sequence.
+   */
+  public void add(byte[] bases, int offset, int length) {
+    sequenceLength += length;
+
+    while (length > 0) {
+      if (chunkLength == chunk.length) {
+        chunk = Arrays.copyOf(chunk, Math.min(chunkSize, 2 * chunk.length));
+      }
+      int copied = Math.min(length, chunk.length - chunkLength);
+      System.arraycopy(bases, offset, chunk, chunkLength, copied);
+      chunkLength += copied;
+      offset += copied;
+      length -= copied;
+
+      if (chunkLength == chunkSize) {
+        byte[] next = new byte[chunkSize];
+        System.arraycopy(chunk, chunkSize - overlap, next, 0, overlap);
+        submit();
+        chunk = next;
+        chunkLength = overlap;
+        chunkOffset += chunkSize - overlap;
+        firstChunk = false;
+      }
+    }
+  }
+
+  /**
+   * @return length of the current sequence.
+   */
+  public int endSequence() {
+    // a following chunk holding only the overlap has no windows of its own
+    if (chunkLength > (firstChunk ? 0 : overlap)) {
+      submit();
+    }
+    chunk = null;
+    return sequenceLength;
+  }
+
+  /**
+   * @return minimizers of all sequences, sorted ascending by global position.
+   */
+  public MinimizerArray finish() {
+    while (!pending.isEmpty()) {
+      merge();
+    }
+    return minimizers;
+  }
+
+  private void submit() {
+    byte[] bases = chunk;
+    int length = chunkLength;
+    int offset = chunkOffset;
+    pending.add(CompletableFuture.supplyAsync(() -> {
+      MinimizerArray result = new MinimizerArray();
+      try {
+        minimizer.minimize(new SequenceKmers(bases, length, kmerSize), result, offset);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return result;
+    }, executor));
+
+    if (pending.size() > maxPending) {
+      merge();
+    }
+  }
+
+  private void merge() {
+    minimizers.addAllAfter(pending.remove().join());
+  }
+}
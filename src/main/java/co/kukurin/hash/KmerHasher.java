@@ -0,0 +1,120 @@
+package co.kukurin.hash;
+
+import java.util.Arrays;
+
+/**
+ * Rolling canonical k-mer hasher. Bases are encoded in 2 bits and packed into a single {@code
+ * long}; the reverse complement is rolled alongside, so each new base updates both strands in O(1).
+ * The hash is computed from the lexicographically smaller of the two (the canonical k-mer), so a
+ * sequence and its reverse complement produce the same hashes.
+ *
+ * <p>Any character other than A, C, G or T (case insensitive) resets the rolling state; k-mers
+ * containing ambiguous bases are never reported.
+ */
+public class KmerHasher {
+
+  public static final int MAX_KMER_SIZE = 32;
+  /**
+   * Strand of the canonical k-mer: forward if the k-mer read as is is the smaller one.
+   */
+  public static final byte FORWARD = 1;
+  public static final byte REVERSE = -1;
+  /**
+   * Strand of k-mers equal to their own reverse complement.
+   */
+  public static final byte BOTH = 0;
+  private static final int INVALID_BASE = -1;
+  private static final byte[] BASE_CODES = new byte[256];
+
+  static {
+    Arrays.fill(BASE_CODES, (byte) INVALID_BASE);
+    BASE_CODES['A'] = BASE_CODES['a'] = 0;
+    BASE_CODES['C'] = BASE_CODES['c'] = 1;
+    BASE_CODES['G'] = BASE_CODES['g'] = 2;
+    BASE_CODES['T'] = BASE_CODES['t'] = 3;
+  }
+
+  private final int kmerSize;
+  private final long mask;
+  private final int complementShift;
+  private long kmer;
+  private long reverseComplement;
+  private int validBases;
+
+  public KmerHasher(int kmerSize) {
+    if (kmerSize < 1 || kmerSize > MAX_KMER_SIZE) {
+      throw new IllegalArgumentException(
+          "k-mer size must be within [1, " + MAX_KMER_SIZE + "], got " + kmerSize);
+    }
+
+    this.kmerSize = kmerSize;
+    this.mask = kmerSize == MAX_KMER_SIZE ? -1L : (1L << (2 * kmerSize)) - 1;
+    this.complementShift = 2 * (kmerSize - 1);
+  }
+
+  /**
+   * Appends a base to the current k-mer.
+   *
+   * @return true if the last k pushed bases form a valid k-mer.
+   */
+  public boolean push(int base) {
+    int code = encode(base);
+
+    if (code == INVALID_BASE) {
+      reset();
+      return false;
+    }
+
+    kmer = ((kmer << 2) | code) & mask;
+    reverseComplement = (reverseComplement >>> 2) | ((long) (3 - code) << complementShift);
+    if (validBases < kmerSize) {
+      validBases++;
+    }
+
+    return validBases == kmerSize;
+  }
+
+  /**
+   * @return hash of the current canonical k-mer. Only meaningful after {@link #push(int)} returned
+   * true.
+   */
+  public long hash() {
+    return mix(Math.min(kmer, reverseComplement));
+  }
+
+  /**
+   * @return {@link #FORWARD}, {@link #REVERSE} or {@link #BOTH}, depending on which strand the
+   * current canonical k-mer was taken from.
+   */
+  public byte strand() {
+    return kmer < reverseComplement ? FORWARD : kmer > reverseComplement ? REVERSE : BOTH;
+  }
+
+  /**
+   * Clears the rolling state, e.g. when starting a new sequence.
+   */
+  public void reset() {
+    kmer = 0;
+    reverseComplement = 0;
+    validBases = 0;
+  }
+
+  /**
+   * @return 2-bit code of the given base, or -1 if the base is not one of ACGT.
+   */
+  public static int encode(int base) {
+    return base < 0 || base >= BASE_CODES.length ? INVALID_BASE : BASE_CODES[base];
+  }
+
+  /**
+   * Invertible 64-bit integer mix (Murmur3 finalizer), so distinct k-mers never collide.
+   */
+  public static long mix(long key) {
+    key ^= key >>> 33;
+    key *= 0xff51afd7ed558ccdL;
+    key ^= key >>> 33;
+    key *= 0xc4ceb9fe1a85ec53L;
+    key ^= key >>> 33;
+    return key;
+  }
+}
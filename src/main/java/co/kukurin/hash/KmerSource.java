@@ -0,0 +1,32 @@
+package co.kukurin.hash;
+
+import java.io.IOException;
+
+/**
+ * Streams hashed k-mers of a single sequence, in ascending position order.
+ */
+public interface KmerSource {
+
+  /**
+   * Advances to the next valid k-mer.
+   *
+   * @return false if there are no more k-mers in the sequence.
+   */
+  boolean nextKmer() throws IOException;
+
+  /**
+   * @return hash of the k-mer found by the last successful {@link #nextKmer()} call.
+   */
+  long kmerHash();
+
+  /**
+   * @return strand of the k-mer found by the last successful {@link #nextKmer()} call, see {@link
+   * KmerHasher#strand()}.
+   */
+  byte kmerStrand();
+
+  /**
+   * @return starting index of the k-mer found by the last successful {@link #nextKmer()} call.
+   */
+  int kmerPosition();
+}
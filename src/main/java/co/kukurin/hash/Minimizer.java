@@ -1,97 +1,127 @@
 package co.kukurin.hash;
 
-import static co.kukurin.Main.HASH_FUNCTION;
-
-import co.kukurin.fasta.FastaKmerBufferedReader.KmerSequenceGenerator;
-import com.google.common.hash.Hasher;
 import java.io.IOException;
-import java.util.ArrayDeque;
-import java.util.ArrayList;
-import java.util.Deque;
-import java.util.Iterator;
-import java.util.List;
-import lombok.AllArgsConstructor;
-import lombok.EqualsAndHashCode;
-import lombok.Value;
 
 /**
  * Minimizes a read.
+ *
+ * <p>Minimizers can be subsampled by hash value, as in FracMinHash: only those whose hash, mixed
+ * once more and read as unsigned, is at most a threshold are kept. Minimizers are the smallest
+ * hashes of their windows and table slots are taken from the low bits of a hash, so the extra mix
+ * keeps sampling independent of both. A threshold at fraction {@code f} of the hash space keeps
+ * about {@code f} of the minimizers, and two sequences subsampled with the same threshold keep the
+ * same subset of their shared minimizers.
  */
-@AllArgsConstructor
 public class Minimizer {
 
   /**
-   * Class which contains (Index, Hash) pairs used as minimizer outputs.
+   * Threshold keeping every minimizer.
    */
-  @Value
-  @EqualsAndHashCode
-  public static class MinimizerValue implements Comparable<MinimizerValue> {
+  public static final long ALL_HASHES = -1L;
+
+  private final int windowSize;
+  private final long hashThreshold;
 
-    private final int originalIndex;
-    private final Hash hash;
+  public Minimizer(int windowSize) {
+    this(windowSize, ALL_HASHES);
+  }
 
-    @Override
-    // compares hashes lo - hi, and indices hi - lo
-    public int compareTo(MinimizerValue o) {
-      int hashCompare = hash.compareTo(o.hash);
+  /**
+   * @param hashThreshold highest kept hash, compared unsigned; see {@link #hashThreshold(double)}.
+   */
+  public Minimizer(int windowSize, long hashThreshold) {
+    this.windowSize = windowSize;
+    this.hashThreshold = hashThreshold;
+  }
 
-      return hashCompare == 0
-          ? Integer.compare(o.originalIndex, originalIndex)
-          : hashCompare;
+  /**
+   * @return threshold keeping hashes in the lowest {@code fraction} of the (unsigned) hash space.
+   */
+  public static long hashThreshold(double fraction) {
+    if (fraction <= 0 || fraction > 1) {
+      throw new IllegalArgumentException("Sample fraction must be within (0, 1], got " + fraction);
     }
+    if (fraction == 1) {
+      return ALL_HASHES;
+    }
+
+    // fraction * 2^64, as an unsigned value
+    double scaled = fraction * 0x1p64;
+    return scaled < 0x1p63 ? (long) scaled : (long) (scaled - 0x1p63) | Long.MIN_VALUE;
   }
 
-  private final int windowSize;
+  /**
+   * @param kmers A k-mer source.
+   * @return Minimizer values, whose index distance is at most (windowSize - 1). A minimizer is
+   * defined to be a hash with smallest hash or (in case of hash equality) largest index within a
+   * window. Hashes are of canonical k-mers, so (up to ties) a sequence and its reverse
+   * complement have the same minimizers. Windows are positional, so k-mers skipped due to
+   * ambiguous bases simply leave a gap. Minimizers above the hash threshold are left out.
+   */
+  public MinimizerArray minimize(KmerSource kmers) throws IOException {
+    MinimizerArray minimizers = new MinimizerArray();
+    minimize(kmers, minimizers);
+    return minimizers;
+  }
 
   /**
-   * @param generator A k-mer generator.
-   * @return List of minimizer values, whose index distance is at most (windowSize - 1). A minimizer
-   * is defined to be a hash with smallest hash or (in case of hash equality) largest index within a
-   * window.
+   * Same as {@link #minimize(KmerSource)}, appending the results to a given array.
    */
-  public List<MinimizerValue> minimize(KmerSequenceGenerator generator) throws IOException {
-    Deque<MinimizerValue> deque = new ArrayDeque<>(windowSize);
-    List<MinimizerValue> minimizers = new ArrayList<>();
-    int i = 0;
+  public void minimize(KmerSource kmers, MinimizerArray minimizers) throws IOException {
+    minimize(kmers, minimizers, 0);
+  }
 
-    for (Iterator<Character> kmerIterator = generator.readNext();
-        kmerIterator.hasNext(); kmerIterator = generator.readNext()) {
-      MinimizerValue minimizerValue = makeMinimizer(i++, kmerIterator);
-      Hash currentHash = minimizerValue.getHash();
+  /**
+   * Same as {@link #minimize(KmerSource, MinimizerArray)}, with stored positions shifted by a given
+   * offset. Used to lay out multiple sequences in a single coordinate space.
+   */
+  public void minimize(KmerSource kmers, MinimizerArray minimizers, int offset)
+      throws IOException {
+    // monotone deque kept in a ring buffer; head holds the newest, tail the oldest element
+    long[] dequeHashes = new long[windowSize];
+    int[] dequePositions = new int[windowSize];
+    byte[] dequeStrands = new byte[windowSize];
+    int tail = 0;
+    int length = 0;
+    int lastAdded = minimizers.isEmpty() ? -1 : minimizers.lastPosition();
+
+    while (kmers.nextKmer()) {
+      int position = kmers.kmerPosition();
+      long currentHash = kmers.kmerHash();
+      byte currentStrand = kmers.kmerStrand();
 
       // remove elements out of window
-      int deletionIndex = i - windowSize;
-      while (!deque.isEmpty() && deque.getLast().originalIndex <= deletionIndex) {
-        deque.pollLast();
+      int deletionIndex = position + 1 - windowSize;
+      while (length > 0 && dequePositions[tail] <= deletionIndex) {
+        tail = (tail + 1) % windowSize;
+        length--;
       }
 
       // compare head to new hash
-      while (!deque.isEmpty() && deque.getFirst().getHash().compareTo(currentHash) >= 0) {
-        deque.pollFirst();
+      while (length > 0
+          && dequeHashes[(tail + length - 1) % windowSize] >= currentHash) {
+        length--;
       }
 
       // push to head
-      deque.push(minimizerValue);
+      int head = (tail + length) % windowSize;
+      dequeHashes[head] = currentHash;
+      dequePositions[head] = position;
+      dequeStrands[head] = currentStrand;
+      length++;
 
-      if (i < windowSize - 1) {
+      if (position < windowSize - 2) {
         continue;
       }
 
-      if (minimizers.isEmpty() ||
-          deque.getLast().getOriginalIndex()
-              != minimizers.get(minimizers.size() - 1).getOriginalIndex()) {
-        minimizers.add(deque.getLast());
+      if (dequePositions[tail] + offset != lastAdded) {
+        lastAdded = dequePositions[tail] + offset;
+        if (hashThreshold == ALL_HASHES
+            || Long.compareUnsigned(KmerHasher.mix(dequeHashes[tail]), hashThreshold) <= 0) {
+          minimizers.add(dequeHashes[tail], lastAdded, dequeStrands[tail]);
+        }
       }
     }
-
-    return minimizers;
-  }
-
-  private MinimizerValue makeMinimizer(int i, Iterator<Character> kmerIterator) {
-    Hasher hasher = HASH_FUNCTION.newHasher();
-    kmerIterator.forEachRemaining(hasher::putChar);
-    Hash currentHash = new Hash(hasher.hash().asLong());
-    return new MinimizerValue(i, currentHash);
   }
 
 }
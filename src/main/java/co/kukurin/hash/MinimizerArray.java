@@ -0,0 +1,201 @@
+package co.kukurin.hash;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * Growable list of minimizers stored as parallel primitive columns, i.e. the (h, pos) tuples of
+ * array M from the paper, extended with the strand of each minimizer's canonical k-mer. Entries
+ * are appended in ascending position order.
+ *
+ * <p>Entries are accessed by index, {@code 0 <= i < size()}.
+ */
+public class MinimizerArray {
+
+  private static final int DEFAULT_CAPACITY = 64;
+
+  private long[] hashes;
+  private int[] positions;
+  private byte[] strands;
+  private int size;
+
+  public MinimizerArray() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public MinimizerArray(int capacity) {
+    this.hashes = new long[Math.max(capacity, 1)];
+    this.positions = new int[Math.max(capacity, 1)];
+    this.strands = new byte[Math.max(capacity, 1)];
+  }
+
+  /**
+   * Appends a forward strand minimizer, see {@link #add(long, int, byte)}.
+   */
+  public void add(long hash, int position) {
+    add(hash, position, KmerHasher.FORWARD);
+  }
+
+  /**
+   * Appends a minimizer; its position must not be lower than the last appended position.
+   */
+  public void add(long hash, int position, byte strand) {
+    if (size == hashes.length) {
+      int capacity = size + (size >> 1) + 1;
+      hashes = Arrays.copyOf(hashes, capacity);
+      positions = Arrays.copyOf(positions, capacity);
+      strands = Arrays.copyOf(strands, capacity);
+    }
+
+    hashes[size] = hash;
+    positions[size] = position;
+    strands[size] = strand;
+    size++;
+  }
+
+  /**
+   * Appends minimizers of another array positioned after the last minimizer of this one, skipping
+   * those already found in an overlapping part of the sequence.
+   */
+  public void addAllAfter(MinimizerArray other) {
+    int from = isEmpty() ? 0 : other.indexOfFirstPositionGte(lastPosition() + 1);
+    int count = other.size - from;
+    if (size + count > hashes.length) {
+      int capacity = Math.max(size + count, size + (size >> 1) + 1);
+      hashes = Arrays.copyOf(hashes, capacity);
+      positions = Arrays.copyOf(positions, capacity);
+      strands = Arrays.copyOf(strands, capacity);
+    }
+
+    System.arraycopy(other.hashes, from, hashes, size, count);
+    System.arraycopy(other.positions, from, positions, size, count);
+    System.arraycopy(other.strands, from, strands, size, count);
+    size += count;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public long getHash(int i) {
+    return hashes[i];
+  }
+
+  public int getPosition(int i) {
+    return positions[i];
+  }
+
+  public byte getStrand(int i) {
+    return strands[i];
+  }
+
+  /**
+   * @return position of the last appended minimizer. Array must not be empty.
+   */
+  public int lastPosition() {
+    return positions[size - 1];
+  }
+
+  /**
+   * @return buffer view of the hash column; shares storage with this array until it grows.
+   */
+  public LongBuffer hashBuffer() {
+    return LongBuffer.wrap(hashes, 0, size).slice();
+  }
+
+  /**
+   * @return buffer view of the position column; shares storage with this array until it grows.
+   */
+  public IntBuffer positionBuffer() {
+    return IntBuffer.wrap(positions, 0, size).slice();
+  }
+
+  /**
+   * @return buffer view of the strand column; shares storage with this array until it grows.
+   */
+  public ByteBuffer strandBuffer() {
+    return ByteBuffer.wrap(strands, 0, size).slice();
+  }
+
+  /**
+   * Removes all entries, retaining allocated capacity.
+   */
+  public void clear() {
+    size = 0;
+  }
+
+  /**
+   * @return index of first minimizer whose position is greater or equal to given position, or
+   * {@link #size()} if there is no such minimizer.
+   */
+  public int indexOfFirstPositionGte(int position) {
+    int lo = 0;
+    int hi = size;
+
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (positions[mid] < position) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+
+    return lo;
+  }
+
+  /**
+   * @return sorted array of distinct hashes contained in this array.
+   */
+  public long[] uniqueHashes() {
+    return uniqueHashes(0, size);
+  }
+
+  /**
+   * @return sorted array of distinct hashes of minimizers [from, to).
+   */
+  public long[] uniqueHashes(int from, int to) {
+    if (from >= to) {
+      return new long[0];
+    }
+
+    long[] sorted = Arrays.copyOfRange(hashes, from, to);
+    Arrays.sort(sorted);
+
+    int unique = 1;
+    for (int i = 1; i < sorted.length; i++) {
+      if (sorted[i] != sorted[unique - 1]) {
+        sorted[unique++] = sorted[i];
+      }
+    }
+
+    return unique == sorted.length ? sorted : Arrays.copyOf(sorted, unique);
+  }
+
+  /**
+   * @param uniqueHashes result of {@link #uniqueHashes()}.
+   * @return for each unique hash, the sum of strands of its occurrences in this array. Its sign
+   * gives the strand a hash is predominantly found on.
+   */
+  public int[] strandVotes(long[] uniqueHashes) {
+    return strandVotes(uniqueHashes, 0, size);
+  }
+
+  /**
+   * @param uniqueHashes result of {@link #uniqueHashes(int, int)} for the same range.
+   * @return same as {@link #strandVotes(long[])}, for minimizers [from, to).
+   */
+  public int[] strandVotes(long[] uniqueHashes, int from, int to) {
+    int[] votes = new int[uniqueHashes.length];
+    for (int i = from; i < to; i++) {
+      votes[Arrays.binarySearch(uniqueHashes, hashes[i])] += strands[i];
+    }
+    return votes;
+  }
+}
@@ -0,0 +1,46 @@
+package co.kukurin.hash;
+
+/**
+ * {@link KmerSource} over a sequence held in memory.
+ */
+public class SequenceKmers implements KmerSource {
+
+  private final KmerHasher kmerHasher;
+  private final byte[] bases;
+  private final int length;
+  private final int kmerSize;
+  private int next;
+
+  public SequenceKmers(byte[] bases, int length, int kmerSize) {
+    this.kmerHasher = new KmerHasher(kmerSize);
+    this.bases = bases;
+    this.length = length;
+    this.kmerSize = kmerSize;
+  }
+
+  @Override
+  public boolean nextKmer() {
+    while (next < length) {
+      if (kmerHasher.push(bases[next++])) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  @Override
+  public long kmerHash() {
+    return kmerHasher.hash();
+  }
+
+  @Override
+  public byte kmerStrand() {
+    return kmerHasher.strand();
+  }
+
+  @Override
+  public int kmerPosition() {
+    return next - kmerSize;
+  }
+}
@@ -0,0 +1,271 @@
+package co.kukurin.index;
+
+import co.kukurin.hash.MinimizerArray;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.IntConsumer;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * Hash table H from the paper, mapping a minimizer hash to all positions it occurs at in the
+ * reference.
+ *
+ * <p>Keys are stored in an open-addressing (linear probing) {@code long} table, split into segments
+ * of 2<sup>16</sup> slots; probing wraps around within the segment of a key's home slot, so
+ * segments can be built independently of each other. Positions of all keys are kept in a single
+ * contiguous posting array, ordered by table slot (CSR layout): postings of slot {@code s} are
+ * found at indices {@code [postingsStart(s), postingsEnd(s))}. Postings of a single key are sorted
+ * ascending.
+ *
+ * <p>Columns are held in buffers, so an index can be queried in place from a memory-mapped file.
+ */
+@Getter(AccessLevel.PACKAGE)
+public class MinimizerIndex {
+
+  public static final int NOT_FOUND = -1;
+  private static final double LOAD_FACTOR = 0.5;
+  private static final int SEGMENT_SIZE = 1 << 16;
+  // minimizers are split into at most MAX_RANGES ranges for the counting pass
+  private static final int MAX_RANGES = 64;
+  private static final int MIN_RANGE_SIZE = 1 << 16;
+
+  private final LongBuffer keys;
+  private final IntBuffer offsets;
+  private final IntBuffer postings;
+  @Getter(AccessLevel.NONE)
+  private final int mask;
+  @Getter(AccessLevel.NONE)
+  private final int segmentMask;
+
+  MinimizerIndex(LongBuffer keys, IntBuffer offsets, IntBuffer postings) {
+    this.keys = keys;
+    this.offsets = offsets;
+    this.postings = postings;
+    this.mask = keys.capacity() - 1;
+    this.segmentMask = Math.min(keys.capacity(), SEGMENT_SIZE) - 1;
+  }
+
+  /**
+   * Builds an index from reference minimizers (sorted ascending by position) on the calling thread.
+   */
+  public static MinimizerIndex build(MinimizerArray minimizers) {
+    return build(minimizers, Runnable::run);
+  }
+
+  /**
+   * Builds an index from reference minimizers (sorted ascending by position), running independent
+   * parts of the build on given executor. The result does not depend on the executor.
+   *
+   * <p>A parallel counting pass groups minimizers by table segment, keeping their order within each
+   * segment. Segments are then filled independently: since postings are laid out by slot, those of
+   * a segment start right after the postings of all minimizers grouped into previous segments.
+   */
+  public static MinimizerIndex build(MinimizerArray minimizers, Executor executor) {
+    int size = minimizers.size();
+    int capacity = tableCapacity(size);
+    int segmentSize = Math.min(capacity, SEGMENT_SIZE);
+    int segments = capacity / segmentSize;
+    int segmentShift = Integer.numberOfTrailingZeros(segmentSize);
+    int mask = capacity - 1;
+
+    int ranges = Math.max(1, Math.min(MAX_RANGES, size / MIN_RANGE_SIZE));
+    int[][] cursors = new int[ranges][segments];
+    forEach(ranges, executor, range -> {
+      for (int i = rangeStart(range, ranges, size); i < rangeStart(range + 1, ranges, size); i++) {
+        cursors[range][homeSlot(minimizers.getHash(i), mask) >>> segmentShift]++;
+      }
+    });
+
+    // minimizer indices grouped by segment, ascending within a segment
+    int[] segmentStarts = new int[segments + 1];
+    for (int segment = 0, total = 0; segment < segments; segment++) {
+      segmentStarts[segment] = total;
+      for (int range = 0; range < ranges; range++) {
+        int count = cursors[range][segment];
+        cursors[range][segment] = total;
+        total += count;
+      }
+    }
+    segmentStarts[segments] = size;
+
+    int[] grouped = new int[size];
+    forEach(ranges, executor, range -> {
+      for (int i = rangeStart(range, ranges, size); i < rangeStart(range + 1, ranges, size); i++) {
+        grouped[cursors[range][homeSlot(minimizers.getHash(i), mask) >>> segmentShift]++] = i;
+      }
+    });
+
+    long[] keys = new long[capacity];
+    // holds per-slot counts until converted to offsets
+    int[] offsets = new int[capacity + 1];
+    int[] postings = new int[size];
+    forEach(segments, executor, segment -> {
+      int first = segment << segmentShift;
+      int end = first + segmentSize;
+      int distinct = 0;
+
+      for (int i = segmentStarts[segment]; i < segmentStarts[segment + 1]; i++) {
+        long hash = minimizers.getHash(grouped[i]);
+        int slot = homeSlot(hash, mask);
+        while (offsets[slot] != 0 && keys[slot] != hash) {
+          slot = nextSlot(slot, segmentSize - 1);
+        }
+
+        if (offsets[slot] == 0 && ++distinct == segmentSize) {
+          // probing relies on every segment having an empty slot
+          throw new IllegalStateException("Too many minimizer hashes in table segment " + segment);
+        }
+        keys[slot] = hash;
+        offsets[slot]++;
+      }
+
+      int total = segmentStarts[segment];
+      for (int slot = first; slot < end; slot++) {
+        int count = offsets[slot];
+        offsets[slot] = total;
+        total += count;
+      }
+
+      int[] slotCursors = Arrays.copyOfRange(offsets, first, end);
+      for (int i = segmentStarts[segment]; i < segmentStarts[segment + 1]; i++) {
+        long hash = minimizers.getHash(grouped[i]);
+        // the hash was inserted, so it is found before any empty slot
+        int slot = homeSlot(hash, mask);
+        while (keys[slot] != hash) {
+          slot = nextSlot(slot, segmentSize - 1);
+        }
+        postings[slotCursors[slot - first]++] = minimizers.getPosition(grouped[i]);
+      }
+    });
+    offsets[capacity] = size;
+
+    return new MinimizerIndex(
+        LongBuffer.wrap(keys), IntBuffer.wrap(offsets), IntBuffer.wrap(postings));
+  }
+
+  /**
+   * @return table slot containing given hash, or {@link #NOT_FOUND}.
+   */
+  public int find(long hash) {
+    int slot = homeSlot(hash, mask);
+
+    while (offsets.get(slot) != offsets.get(slot + 1)) {
+      if (keys.get(slot) == hash) {
+        return slot;
+      }
+
+      slot = nextSlot(slot, segmentMask);
+    }
+
+    return NOT_FOUND;
+  }
+
+  public int postingsStart(int slot) {
+    return offsets.get(slot);
+  }
+
+  public int postingsEnd(int slot) {
+    return offsets.get(slot + 1);
+  }
+
+  public int posting(int i) {
+    return postings.get(i);
+  }
+
+  /**
+   * @return number of slots in the key table.
+   */
+  public int capacity() {
+    return keys.capacity();
+  }
+
+  /**
+   * @return number of positions at which given hash occurs in the reference.
+   */
+  public int occurrences(long hash) {
+    int slot = find(hash);
+    return slot == NOT_FOUND ? 0 : postingsEnd(slot) - postingsStart(slot);
+  }
+
+  /**
+   * @return number of distinct hashes in the table.
+   */
+  public int distinctHashes() {
+    int distinct = 0;
+    for (int slot = 0; slot < capacity(); slot++) {
+      distinct += postingsEnd(slot) != postingsStart(slot) ? 1 : 0;
+    }
+    return distinct;
+  }
+
+  /**
+   * @return number of distinct hashes occurring more than {@code maxOccurrences} times.
+   */
+  public int hashesOccurringMoreThan(int maxOccurrences) {
+    int count = 0;
+    for (int slot = 0; slot < capacity(); slot++) {
+      count += postingsEnd(slot) - postingsStart(slot) > maxOccurrences ? 1 : 0;
+    }
+    return count;
+  }
+
+  /**
+   * @return lowest occurrence count such that at most {@code topFraction} of the distinct hashes
+   * occur more often than it.
+   */
+  public int occurrenceCutoff(double topFraction) {
+    int[] counts = new int[distinctHashes()];
+    if (counts.length == 0) {
+      return 1;
+    }
+
+    int distinct = 0;
+    for (int slot = 0; slot < capacity(); slot++) {
+      int count = postingsEnd(slot) - postingsStart(slot);
+      if (count > 0) {
+        counts[distinct++] = count;
+      }
+    }
+
+    Arrays.sort(counts);
+    int filtered = (int) Math.min(counts.length - 1, (long) (topFraction * counts.length));
+    return counts[counts.length - 1 - filtered];
+  }
+
+  private static int homeSlot(long hash, int mask) {
+    // hashes are outputs of an avalanching mix, so low bits are already well distributed
+    return (int) hash & mask;
+  }
+
+  /**
+   * @return slot probed after given one, wrapping around within its segment.
+   */
+  private static int nextSlot(int slot, int segmentMask) {
+    return (slot & ~segmentMask) | ((slot + 1) & segmentMask);
+  }
+
+  private static int rangeStart(int range, int ranges, int size) {
+    return (int) ((long) range * size / ranges);
+  }
+
+  private static void forEach(int tasks, Executor executor, IntConsumer task) {
+    CompletableFuture<?>[] futures = new CompletableFuture<?>[tasks];
+    for (int i = 0; i < tasks; i++) {
+      int index = i;
+      futures[i] = CompletableFuture.runAsync(() -> task.accept(index), executor);
+    }
+    CompletableFuture.allOf(futures).join();
+  }
+
+  private static int tableCapacity(int entries) {
+    int capacity = 1;
+    while (capacity < entries / LOAD_FACTOR) {
+      capacity <<= 1;
+    }
+    return capacity;
+  }
+}
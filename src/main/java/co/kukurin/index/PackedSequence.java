@@ -0,0 +1,109 @@
+package co.kukurin.index;
+
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * Reference bases in global coordinates (see {@link ReferenceSequences}), packed 2 bits per base,
+ * 32 bases per {@code long} with the first base in the lowest bits. Bases are coded A = 0, C = 1,
+ * G = 2, T = 3 (see {@link #code(byte)}); other bases, such as N, are stored as A.
+ */
+public class PackedSequence {
+
+  public static final byte A = 0;
+  public static final byte C = 1;
+  public static final byte G = 2;
+  public static final byte T = 3;
+  /**
+   * Code of bases other than ACGT; only query bases ever have it.
+   */
+  public static final byte UNKNOWN = 4;
+
+  private static final int BASES_PER_WORD = Long.SIZE / 2;
+  private static final byte[] CODES = new byte[256];
+
+  static {
+    Arrays.fill(CODES, UNKNOWN);
+    CODES['A'] = CODES['a'] = A;
+    CODES['C'] = CODES['c'] = C;
+    CODES['G'] = CODES['g'] = G;
+    CODES['T'] = CODES['t'] = T;
+  }
+
+  /**
+   * Packs bases appended in global coordinate order.
+   */
+  public static class Builder {
+
+    private long[] words = new long[16];
+    private long length;
+
+    /**
+     * @throws IllegalStateException if the global coordinate space overflows.
+     */
+    public Builder add(byte[] bases, int offset, int count) {
+      if (length + count > Integer.MAX_VALUE) {
+        throw new IllegalStateException(
+            "Reference database exceeds " + Integer.MAX_VALUE + " bases");
+      }
+
+      int requiredWords = words(length + count);
+      if (requiredWords > words.length) {
+        words = Arrays.copyOf(words, Math.max(requiredWords, words.length + (words.length >> 1)));
+      }
+
+      for (int i = 0; i < count; i++, length++) {
+        long code = CODES[bases[offset + i] & 0xFF] & 3;
+        words[(int) (length / BASES_PER_WORD)] |= code << (2 * (length % BASES_PER_WORD));
+      }
+      return this;
+    }
+
+    public PackedSequence build() {
+      return new PackedSequence(LongBuffer.wrap(Arrays.copyOf(words, words(length))),
+          (int) length);
+    }
+  }
+
+  private final LongBuffer words;
+  private final int length;
+
+  PackedSequence(LongBuffer words, int length) {
+    this.words = words;
+    this.length = length;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * @return code of given base, {@link #UNKNOWN} for bases other than ACGT.
+   */
+  public static byte code(byte base) {
+    return CODES[base & 0xFF];
+  }
+
+  /**
+   * @return number of bases.
+   */
+  public int length() {
+    return length;
+  }
+
+  /**
+   * @return code of the base at given global position.
+   */
+  public byte get(int position) {
+    long word = words.get(position / BASES_PER_WORD);
+    return (byte) ((word >>> (2 * (position % BASES_PER_WORD))) & 3);
+  }
+
+  LongBuffer getWords() {
+    return words;
+  }
+
+  static int words(long bases) {
+    return (int) ((bases + BASES_PER_WORD - 1) / BASES_PER_WORD);
+  }
+}
@@ -0,0 +1,160 @@
+package co.kukurin.index;
+
+import co.kukurin.hash.Minimizer;
+import co.kukurin.hash.MinimizerArray;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * Everything required to map queries against a reference database: the table of reference
+ * sequences, the minimizer array M (sorted ascending by global position) with the strand of each
+ * minimizer, the hash table H and the parameters the minimizers were computed with, including the
+ * hash threshold they were subsampled with; queries must be minimized with the same parameters.
+ *
+ * <p>Hashes occurring more than {@link #getMaxOccurrences()} times in the reference (typically
+ * derived from repeats) are kept in the index, but are not used to seed candidate regions.
+ *
+ * <p>The index optionally holds the reference bases, packed 2 bits per base, for verifying
+ * mappings at base level.
+ *
+ * <p>Instances are either built in memory or opened in place from a file written by {@link
+ * ReferenceIndexFile}.
+ */
+@Getter
+public class ReferenceIndex {
+
+  private final int kmerSize;
+  private final int windowSize;
+  private final int maxOccurrences;
+  private final long hashThreshold;
+  @Getter(AccessLevel.PACKAGE)
+  private final LongBuffer minimizerHashes;
+  @Getter(AccessLevel.PACKAGE)
+  private final IntBuffer minimizerPositions;
+  @Getter(AccessLevel.PACKAGE)
+  private final ByteBuffer minimizerStrands;
+  private final MinimizerIndex minimizerIndex;
+  private final ReferenceSequences sequences;
+  @Getter(AccessLevel.NONE)
+  private final PackedSequence bases;
+
+  ReferenceIndex(
+      int kmerSize,
+      int windowSize,
+      int maxOccurrences,
+      long hashThreshold,
+      ReferenceSequences sequences,
+      LongBuffer minimizerHashes,
+      IntBuffer minimizerPositions,
+      ByteBuffer minimizerStrands,
+      MinimizerIndex minimizerIndex,
+      PackedSequence bases) {
+    this.kmerSize = kmerSize;
+    this.windowSize = windowSize;
+    this.maxOccurrences = maxOccurrences;
+    this.hashThreshold = hashThreshold;
+    this.sequences = sequences;
+    this.minimizerHashes = minimizerHashes;
+    this.minimizerPositions = minimizerPositions;
+    this.minimizerStrands = minimizerStrands;
+    this.minimizerIndex = minimizerIndex;
+    this.bases = bases;
+  }
+
+  /**
+   * Builds an in-memory index from reference minimizers (sorted ascending by global position) of
+   * given sequences, without filtering frequent hashes.
+   */
+  public static ReferenceIndex build(
+      MinimizerArray minimizers, ReferenceSequences sequences, int kmerSize, int windowSize) {
+    return build(minimizers, sequences, kmerSize, windowSize, Minimizer.ALL_HASHES, Runnable::run);
+  }
+
+  /**
+   * Same as {@link #build(MinimizerArray, ReferenceSequences, int, int)}, for minimizers subsampled
+   * with given hash threshold (see {@link Minimizer#Minimizer(int, long)}), building the hash table
+   * on given executor, see {@link MinimizerIndex#build(MinimizerArray, Executor)}.
+   */
+  public static ReferenceIndex build(MinimizerArray minimizers, ReferenceSequences sequences,
+      int kmerSize, int windowSize, long hashThreshold, Executor executor) {
+    return new ReferenceIndex(
+        kmerSize,
+        windowSize,
+        Integer.MAX_VALUE,
+        hashThreshold,
+        sequences,
+        minimizers.hashBuffer(),
+        minimizers.positionBuffer(),
+        minimizers.strandBuffer(),
+        MinimizerIndex.build(minimizers, executor),
+        null);
+  }
+
+  /**
+   * @return index sharing contents with this one, with a different occurrence cutoff.
+   */
+  public ReferenceIndex withMaxOccurrences(int maxOccurrences) {
+    return new ReferenceIndex(kmerSize, windowSize, maxOccurrences, hashThreshold, sequences,
+        minimizerHashes, minimizerPositions, minimizerStrands, minimizerIndex, bases);
+  }
+
+  /**
+   * @return index sharing contents with this one, holding given bases of all its sequences.
+   */
+  public ReferenceIndex withBases(PackedSequence bases) {
+    return new ReferenceIndex(kmerSize, windowSize, maxOccurrences, hashThreshold, sequences,
+        minimizerHashes, minimizerPositions, minimizerStrands, minimizerIndex, bases);
+  }
+
+  /**
+   * @return reference bases, if held by this index.
+   */
+  public Optional<PackedSequence> getBases() {
+    return Optional.ofNullable(bases);
+  }
+
+  public int minimizerCount() {
+    return minimizerPositions.capacity();
+  }
+
+  public long getMinimizerHash(int i) {
+    return minimizerHashes.get(i);
+  }
+
+  public int getMinimizerPosition(int i) {
+    return minimizerPositions.get(i);
+  }
+
+  /**
+   * @return strand of given minimizer's canonical k-mer, see {@link
+   * co.kukurin.hash.KmerHasher#strand()}.
+   */
+  public byte getMinimizerStrand(int i) {
+    return minimizerStrands.get(i);
+  }
+
+  /**
+   * @return index of first minimizer whose position is greater or equal to given position, or
+   * {@link #minimizerCount()} if there is no such minimizer.
+   */
+  public int indexOfFirstMinimizerGte(int position) {
+    int lo = 0;
+    int hi = minimizerCount();
+
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (minimizerPositions.get(mid) < position) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+
+    return lo;
+  }
+}
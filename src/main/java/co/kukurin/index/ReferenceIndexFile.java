@@ -0,0 +1,250 @@
+package co.kukurin.index;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Versioned binary file format for a {@link ReferenceIndex}.
+ *
+ * <p>All values are little-endian. A fixed size header is followed by the index columns, each
+ * starting at an 8 byte aligned offset:
+ *
+ * <pre>
+ *   int magic, int version, int kmerSize, int windowSize,
+ *   int minimizerCount, int tableCapacity, int postingCount, int sequenceCount,
+ *   int maxOccurrences, int flags, long hashThreshold, long baseCount
+ *   int[sequenceCount]      sequence starts
+ *   int[sequenceCount]      sequence lengths
+ *   int[sequenceCount + 1]  sequence name offsets
+ *   byte[]                  UTF-8 sequence names
+ *   long[minimizerCount]    minimizer hashes
+ *   int[minimizerCount]     minimizer positions
+ *   byte[minimizerCount]    minimizer strands
+ *   long[tableCapacity]     table keys, probed within segments (see {@link MinimizerIndex})
+ *   int[tableCapacity + 1]  table offsets
+ *   int[postingCount]       postings
+ *   long[baseWords]         reference bases if flag {@code BASES} is set, see {@link
+ *                           PackedSequence}
+ * </pre>
+ *
+ * <p>Bases are packed 32 per word, so {@code baseWords = ceil(baseCount / 32)}; they are only
+ * written for indexes holding them, so indexes not used for verification take no space for them.
+ *
+ * <p>{@link #open(Path)} maps every column with {@link FileChannel#map} and queries it in place,
+ * so loading does no deserialization and processes opening the same file share the page cache.
+ */
+public class ReferenceIndexFile {
+
+  static final int MAGIC = 0x5844494d; // "MIDX"
+  static final int VERSION = 8;
+  static final int FLAG_BASES = 1;
+
+  private static final int HEADER_BYTES = 56;
+  private static final int WRITE_BUFFER_BYTES = 1 << 20;
+  private static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+  /**
+   * @return true if given file starts with the index file magic number.
+   */
+  public static boolean isIndexFile(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES).order(BYTE_ORDER);
+      return channel.read(magic) == Integer.BYTES && magic.getInt(0) == MAGIC;
+    }
+  }
+
+  /**
+   * Writes given index to a file, replacing it if it exists.
+   */
+  public static void write(ReferenceIndex index, Path path) throws IOException {
+    MinimizerIndex table = index.getMinimizerIndex();
+    ReferenceSequences sequences = index.getSequences();
+    PackedSequence bases = index.getBases().orElse(null);
+
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES).order(BYTE_ORDER);
+
+      buffer.putInt(MAGIC)
+          .putInt(VERSION)
+          .putInt(index.getKmerSize())
+          .putInt(index.getWindowSize())
+          .putInt(index.minimizerCount())
+          .putInt(table.capacity())
+          .putInt(table.getPostings().capacity())
+          .putInt(sequences.size())
+          .putInt(index.getMaxOccurrences())
+          .putInt(bases == null ? 0 : FLAG_BASES)
+          .putLong(index.getHashThreshold())
+          .putLong(bases == null ? 0 : bases.length());
+
+      writeInts(channel, buffer, sequences.getStarts());
+      writeInts(channel, buffer, sequences.getLengths());
+      writeInts(channel, buffer, sequences.getNameOffsets());
+      writeBytes(channel, buffer, sequences.getNames());
+      writeLongs(channel, buffer, index.getMinimizerHashes());
+      writeInts(channel, buffer, index.getMinimizerPositions());
+      writeBytes(channel, buffer, index.getMinimizerStrands());
+      writeLongs(channel, buffer, table.getKeys());
+      writeInts(channel, buffer, table.getOffsets());
+      writeInts(channel, buffer, table.getPostings());
+      if (bases != null) {
+        writeLongs(channel, buffer, bases.getWords());
+      }
+
+      flush(channel, buffer);
+    }
+  }
+
+  /**
+   * Opens an index file, mapping its contents into memory.
+   */
+  public static ReferenceIndex open(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(BYTE_ORDER);
+      while (header.hasRemaining() && channel.read(header) >= 0) {
+        // read until header is complete
+      }
+
+      if (header.hasRemaining() || header.getInt(0) != MAGIC) {
+        throw new IOException("Not a reference index file: " + path);
+      }
+
+      int version = header.getInt(4);
+      if (version != VERSION) {
+        throw new IOException(String.format(
+            "Unsupported index version %d (expected %d), rebuild %s", version, VERSION, path));
+      }
+
+      int kmerSize = header.getInt(8);
+      int windowSize = header.getInt(12);
+      int minimizerCount = header.getInt(16);
+      int tableCapacity = header.getInt(20);
+      int postingCount = header.getInt(24);
+      int sequenceCount = header.getInt(28);
+      int maxOccurrences = header.getInt(32);
+      boolean hasBases = (header.getInt(36) & FLAG_BASES) != 0;
+      long hashThreshold = header.getLong(40);
+      long baseCount = hasBases ? header.getLong(48) : 0;
+
+      long offset = HEADER_BYTES;
+      ByteBuffer starts = map(channel, offset, Integer.BYTES * (long) sequenceCount);
+      offset += aligned(starts.capacity());
+      ByteBuffer lengths = map(channel, offset, Integer.BYTES * (long) sequenceCount);
+      offset += aligned(lengths.capacity());
+      ByteBuffer nameOffsets = map(channel, offset, Integer.BYTES * (sequenceCount + 1L));
+      offset += aligned(nameOffsets.capacity());
+      int namesLength = nameOffsets.getInt(Integer.BYTES * sequenceCount);
+      ByteBuffer names = map(channel, offset, namesLength);
+      offset += aligned(names.capacity());
+
+      long expectedSize = offset
+          + aligned(Long.BYTES * (long) minimizerCount)
+          + aligned(Integer.BYTES * (long) minimizerCount)
+          + aligned(minimizerCount)
+          + aligned(Long.BYTES * (long) tableCapacity)
+          + aligned(Integer.BYTES * (tableCapacity + 1L))
+          + aligned(Integer.BYTES * (long) postingCount)
+          + Long.BYTES * (long) PackedSequence.words(baseCount);
+      if (channel.size() != expectedSize) {
+        throw new IOException(String.format(
+            "Truncated or corrupt index file %s (expected %d bytes, found %d)",
+            path, expectedSize, channel.size()));
+      }
+
+      ByteBuffer hashes = map(channel, offset, Long.BYTES * (long) minimizerCount);
+      offset += aligned(hashes.capacity());
+      ByteBuffer positions = map(channel, offset, Integer.BYTES * (long) minimizerCount);
+      offset += aligned(positions.capacity());
+      ByteBuffer strands = map(channel, offset, minimizerCount);
+      offset += aligned(strands.capacity());
+      ByteBuffer keys = map(channel, offset, Long.BYTES * (long) tableCapacity);
+      offset += aligned(keys.capacity());
+      ByteBuffer offsets = map(channel, offset, Integer.BYTES * (tableCapacity + 1L));
+      offset += aligned(offsets.capacity());
+      ByteBuffer postings = map(channel, offset, Integer.BYTES * (long) postingCount);
+      offset += aligned(postings.capacity());
+      PackedSequence bases = !hasBases ? null : new PackedSequence(
+          map(channel, offset, Long.BYTES * (long) PackedSequence.words(baseCount)).asLongBuffer(),
+          (int) baseCount);
+
+      MinimizerIndex table = new MinimizerIndex(
+          keys.asLongBuffer(), offsets.asIntBuffer(), postings.asIntBuffer());
+      ReferenceSequences sequences = new ReferenceSequences(
+          starts.asIntBuffer(), lengths.asIntBuffer(), nameOffsets.asIntBuffer(), names);
+      return new ReferenceIndex(kmerSize, windowSize, maxOccurrences, hashThreshold, sequences,
+          hashes.asLongBuffer(), positions.asIntBuffer(), strands, table, bases);
+    }
+  }
+
+  private static ByteBuffer map(FileChannel channel, long offset, long size) throws IOException {
+    if (size > Integer.MAX_VALUE) {
+      throw new IOException("Index section of " + size + " bytes exceeds mappable size");
+    }
+
+    return channel.map(MapMode.READ_ONLY, offset, size).order(BYTE_ORDER);
+  }
+
+  private static void writeLongs(FileChannel channel, ByteBuffer buffer, LongBuffer values)
+      throws IOException {
+    for (int i = 0; i < values.capacity(); i++) {
+      if (buffer.remaining() < Long.BYTES) {
+        flush(channel, buffer);
+      }
+      buffer.putLong(values.get(i));
+    }
+  }
+
+  private static void writeInts(FileChannel channel, ByteBuffer buffer, IntBuffer values)
+      throws IOException {
+    for (int i = 0; i < values.capacity(); i++) {
+      if (buffer.remaining() < Integer.BYTES) {
+        flush(channel, buffer);
+      }
+      buffer.putInt(values.get(i));
+    }
+
+    if (values.capacity() % 2 != 0) {
+      if (buffer.remaining() < Integer.BYTES) {
+        flush(channel, buffer);
+      }
+      buffer.putInt(0);
+    }
+  }
+
+  private static void writeBytes(FileChannel channel, ByteBuffer buffer, ByteBuffer values)
+      throws IOException {
+    for (int i = 0; i < values.capacity(); i++) {
+      if (!buffer.hasRemaining()) {
+        flush(channel, buffer);
+      }
+      buffer.put(values.get(i));
+    }
+
+    for (long i = values.capacity(); i < aligned(values.capacity()); i++) {
+      if (!buffer.hasRemaining()) {
+        flush(channel, buffer);
+      }
+      buffer.put((byte) 0);
+    }
+  }
+
+  private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  private static long aligned(long bytes) {
+    return (bytes + Long.BYTES - 1) & -Long.BYTES;
+  }
+}
@@ -0,0 +1,140 @@
+package co.kukurin.index;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * Table of sequences contained in a reference database.
+ *
+ * <p>Sequences are laid out back to back in a single global coordinate space: sequence {@code i}
+ * covers positions {@code [getStart(i), getEnd(i))}. Minimizer positions stored in a {@link
+ * ReferenceIndex} are global positions.
+ */
+@Getter(AccessLevel.PACKAGE)
+public class ReferenceSequences {
+
+  /**
+   * Collects sequences in the order they are laid out.
+   */
+  public static class Builder {
+
+    private int[] starts = new int[16];
+    private int[] lengths = new int[16];
+    private int[] nameOffsets = new int[17];
+    private byte[] names = new byte[256];
+    private int size;
+    private long totalLength;
+
+    /**
+     * Appends a sequence, placing it right after the previously added one.
+     *
+     * @throws IllegalStateException if the global coordinate space overflows.
+     */
+    public Builder add(String name, int length) {
+      if (totalLength + length > Integer.MAX_VALUE) {
+        throw new IllegalStateException(
+            "Reference database exceeds " + Integer.MAX_VALUE + " bases");
+      }
+
+      if (size == starts.length) {
+        starts = Arrays.copyOf(starts, size * 2);
+        lengths = Arrays.copyOf(lengths, size * 2);
+        nameOffsets = Arrays.copyOf(nameOffsets, size * 2 + 1);
+      }
+
+      byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+      int namesEnd = nameOffsets[size] + nameBytes.length;
+      if (namesEnd > names.length) {
+        names = Arrays.copyOf(names, Math.max(names.length * 2, namesEnd));
+      }
+      System.arraycopy(nameBytes, 0, names, nameOffsets[size], nameBytes.length);
+
+      starts[size] = (int) totalLength;
+      lengths[size] = length;
+      nameOffsets[size + 1] = namesEnd;
+      totalLength += length;
+      size++;
+      return this;
+    }
+
+    /**
+     * @return global position at which the next added sequence will start.
+     */
+    public int nextStart() {
+      return (int) totalLength;
+    }
+
+    public ReferenceSequences build() {
+      return new ReferenceSequences(
+          IntBuffer.wrap(Arrays.copyOf(starts, size)),
+          IntBuffer.wrap(Arrays.copyOf(lengths, size)),
+          IntBuffer.wrap(Arrays.copyOf(nameOffsets, size + 1)),
+          ByteBuffer.wrap(Arrays.copyOf(names, nameOffsets[size])));
+    }
+  }
+
+  private final IntBuffer starts;
+  private final IntBuffer lengths;
+  private final IntBuffer nameOffsets;
+  private final ByteBuffer names;
+
+  ReferenceSequences(IntBuffer starts, IntBuffer lengths, IntBuffer nameOffsets, ByteBuffer names) {
+    this.starts = starts;
+    this.lengths = lengths;
+    this.nameOffsets = nameOffsets;
+    this.names = names;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public int size() {
+    return starts.capacity();
+  }
+
+  public int getStart(int sequence) {
+    return starts.get(sequence);
+  }
+
+  public int getLength(int sequence) {
+    return lengths.get(sequence);
+  }
+
+  public int getEnd(int sequence) {
+    return starts.get(sequence) + lengths.get(sequence);
+  }
+
+  public String getName(int sequence) {
+    int offset = nameOffsets.get(sequence);
+    byte[] name = new byte[nameOffsets.get(sequence + 1) - offset];
+    for (int i = 0; i < name.length; i++) {
+      name[i] = names.get(offset + i);
+    }
+    return new String(name, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * @return sequence containing given global position.
+   */
+  public int sequenceOf(int position) {
+    int lo = 0;
+    int hi = size() - 1;
+
+    // find the last sequence starting at or before position
+    while (lo < hi) {
+      int mid = (lo + hi + 1) >>> 1;
+      if (starts.get(mid) <= position) {
+        lo = mid;
+      } else {
+        hi = mid - 1;
+      }
+    }
+
+    return lo;
+  }
+}
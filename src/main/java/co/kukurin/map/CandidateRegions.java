@@ -0,0 +1,100 @@
+package co.kukurin.map;
+
+import co.kukurin.map.ReadMapper.CandidateRegion;
+import java.util.AbstractList;
+import java.util.Arrays;
+
+/**
+ * Growable list of candidate regions stored as parallel primitive columns. Regions are appended in
+ * ascending order; {@link #get(int)} materializes a {@link CandidateRegion} on demand, while the
+ * mapping loop reads the columns directly through {@link #getLow(int)} and {@link #getHigh(int)}.
+ *
+ * <p>Each region also carries an upper bound on the shared minimizers of any window sliding over
+ * it, {@link #UNBOUNDED} unless set; the mapping loop visits regions best-first by this bound.
+ */
+public class CandidateRegions extends AbstractList<CandidateRegion> {
+
+  public static final int UNBOUNDED = Integer.MAX_VALUE;
+  private static final int DEFAULT_CAPACITY = 16;
+
+  private int[] lows = new int[DEFAULT_CAPACITY];
+  private int[] highs = new int[DEFAULT_CAPACITY];
+  private int[] bounds = new int[DEFAULT_CAPACITY];
+  // (UNBOUNDED - bound, region) pairs, sorted by {@link #sortBestFirst()}
+  private long[] order = new long[0];
+  private int size;
+
+  /**
+   * Appends region [low, high], merging it into the last region if the two overlap.
+   */
+  public void add(int low, int high) {
+    if (size > 0 && highs[size - 1] >= low) {
+      highs[size - 1] = Math.max(highs[size - 1], high);
+      return;
+    }
+
+    if (size == lows.length) {
+      int capacity = size + (size >> 1) + 1;
+      lows = Arrays.copyOf(lows, capacity);
+      highs = Arrays.copyOf(highs, capacity);
+      bounds = Arrays.copyOf(bounds, capacity);
+    }
+
+    lows[size] = low;
+    highs[size] = high;
+    bounds[size] = UNBOUNDED;
+    size++;
+  }
+
+  public int getLow(int i) {
+    return lows[i];
+  }
+
+  public int getHigh(int i) {
+    return highs[i];
+  }
+
+  public int getBound(int i) {
+    return bounds[i];
+  }
+
+  public void setBound(int i, int bound) {
+    bounds[i] = bound;
+  }
+
+  /**
+   * Orders regions by descending bound, ties in ascending position, after which the i-th region in
+   * that order is given by {@link #bestFirst(int)}.
+   */
+  public void sortBestFirst() {
+    if (order.length < size) {
+      order = new long[lows.length];
+    }
+    for (int i = 0; i < size; i++) {
+      order[i] = ((long) (UNBOUNDED - bounds[i]) << Integer.SIZE) | i;
+    }
+    Arrays.sort(order, 0, size);
+  }
+
+  public int bestFirst(int rank) {
+    return (int) order[rank];
+  }
+
+  @Override
+  public CandidateRegion get(int i) {
+    if (i < 0 || i >= size) {
+      throw new IndexOutOfBoundsException("Index: " + i + ", size: " + size);
+    }
+    return new CandidateRegion(lows[i], highs[i]);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public void clear() {
+    size = 0;
+  }
+}
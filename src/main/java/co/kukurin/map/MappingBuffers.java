@@ -0,0 +1,136 @@
+package co.kukurin.map;
+
+import co.kukurin.index.MinimizerIndex;
+import java.util.Arrays;
+
+/**
+ * Scratch space reused between queries mapped on the same thread, so that collecting candidate
+ * regions does not allocate once the buffers have grown to the working set size. Instances are not
+ * thread safe.
+ */
+public class MappingBuffers {
+
+  private static final int RADIX_BITS = 8;
+  private static final int RADIX = 1 << RADIX_BITS;
+  // below this many hits a comparison sort beats clearing and scanning the digit histograms
+  private static final int RADIX_SORT_THRESHOLD = 256;
+
+  private final int[] digitCounts = new int[RADIX];
+  private final CandidateRegions regions = new CandidateRegions();
+  private int[] slots = new int[0];
+  private int[] hits = new int[0];
+  private int[] scratch = new int[0];
+  private int hitCount;
+  private int filteredHashes;
+
+  /**
+   * Gathers reference positions of all query hashes into {@link #hits()}, sorted ascending. Hashes
+   * occurring more than {@code maxOccurrences} times are skipped and counted in {@link
+   * #filteredHashes()}.
+   *
+   * @return number of hits.
+   */
+  int collectHits(long[] queryHashes, MinimizerIndex referenceIndex, int maxOccurrences) {
+    if (slots.length < queryHashes.length) {
+      slots = new int[queryHashes.length];
+    }
+
+    int total = 0;
+    filteredHashes = 0;
+    for (int i = 0; i < queryHashes.length; i++) {
+      int slot = referenceIndex.find(queryHashes[i]);
+      if (slot != MinimizerIndex.NOT_FOUND) {
+        int occurrences = referenceIndex.postingsEnd(slot) - referenceIndex.postingsStart(slot);
+        if (occurrences > maxOccurrences) {
+          slot = MinimizerIndex.NOT_FOUND;
+          filteredHashes++;
+        } else {
+          total += occurrences;
+        }
+      }
+      slots[i] = slot;
+    }
+
+    if (hits.length < total) {
+      hits = new int[total];
+      scratch = new int[total];
+    }
+
+    hitCount = 0;
+    int maxHit = 0;
+    for (int i = 0; i < queryHashes.length; i++) {
+      int slot = slots[i];
+      if (slot == MinimizerIndex.NOT_FOUND) {
+        continue;
+      }
+
+      for (int p = referenceIndex.postingsStart(slot); p < referenceIndex.postingsEnd(slot); p++) {
+        int hit = referenceIndex.posting(p);
+        hits[hitCount++] = hit;
+        maxHit |= hit;
+      }
+    }
+
+    sortHits(maxHit);
+    return hitCount;
+  }
+
+  /**
+   * @return number of query hashes skipped by the last {@link #collectHits} call.
+   */
+  int filteredHashes() {
+    return filteredHashes;
+  }
+
+  /**
+   * @return number of hits gathered by the last {@link #collectHits} call.
+   */
+  int hitCount() {
+    return hitCount;
+  }
+
+  int[] hits() {
+    return hits;
+  }
+
+  CandidateRegions regions() {
+    return regions;
+  }
+
+  /**
+   * LSD radix sort of the (non-negative) hits, skipping digits above the highest set bit.
+   */
+  private void sortHits(int maxHit) {
+    if (hitCount < RADIX_SORT_THRESHOLD) {
+      Arrays.sort(hits, 0, hitCount);
+      return;
+    }
+
+    int[] from = hits;
+    int[] to = scratch;
+    for (int shift = 0; shift < Integer.SIZE && (maxHit >>> shift) != 0; shift += RADIX_BITS) {
+      Arrays.fill(digitCounts, 0);
+      for (int i = 0; i < hitCount; i++) {
+        digitCounts[(from[i] >>> shift) & (RADIX - 1)]++;
+      }
+
+      int offset = 0;
+      for (int digit = 0; digit < RADIX; digit++) {
+        int count = digitCounts[digit];
+        digitCounts[digit] = offset;
+        offset += count;
+      }
+
+      for (int i = 0; i < hitCount; i++) {
+        to[digitCounts[(from[i] >>> shift) & (RADIX - 1)]++] = from[i];
+      }
+
+      int[] swap = from;
+      from = to;
+      to = swap;
+    }
+
+    hits = from;
+    scratch = to;
+  }
+}
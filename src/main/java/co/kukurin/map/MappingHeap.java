@@ -0,0 +1,119 @@
+package co.kukurin.map;
+
+import java.util.Arrays;
+
+/**
+ * Bounded min-heap of (shared minimizers, reference position) pairs keeping the best mappings
+ * offered so far; offering takes O(log k) time for capacity k.
+ *
+ * <p>Pairs are packed into a single {@code long} key, shared minimizers in the high bits, so more
+ * shared minimizers rank higher and ties rank by ascending position. The ranking is therefore
+ * independent of the order in which pairs are offered.
+ */
+class MappingHeap {
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final int capacity;
+  private long[] keys;
+  private int[] positions;
+  private int size;
+
+  /**
+   * @param capacity maximum number of pairs kept; non-positive for no limit.
+   */
+  MappingHeap(int capacity) {
+    this.capacity = capacity > 0 ? capacity : Integer.MAX_VALUE;
+    this.keys = new long[Math.min(this.capacity, INITIAL_CAPACITY)];
+    this.positions = new int[keys.length];
+  }
+
+  void offer(int sharedMinimizers, int position) {
+    long key = key(sharedMinimizers, position);
+
+    if (size < capacity) {
+      if (size == keys.length) {
+        keys = Arrays.copyOf(keys, (int) Math.min(capacity, 2L * size));
+        positions = Arrays.copyOf(positions, keys.length);
+      }
+      keys[size] = key;
+      positions[size] = position;
+      siftUp(size++);
+    } else if (key > keys[0]) {
+      keys[0] = key;
+      positions[0] = position;
+      siftDown(0, size);
+    }
+  }
+
+  /**
+   * @return whether a pair would be kept if offered now.
+   */
+  boolean accepts(int sharedMinimizers, int position) {
+    return size < capacity || key(sharedMinimizers, position) > keys[0];
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * Sorts kept pairs from best to worst, after which they are accessed by rank with {@link
+   * #getSharedMinimizers(int)} and {@link #getPosition(int)}, and no more pairs can be offered.
+   */
+  void sortDescending() {
+    for (int end = size - 1; end > 0; end--) {
+      swap(0, end);
+      siftDown(0, end);
+    }
+  }
+
+  int getSharedMinimizers(int rank) {
+    return (int) (keys[rank] >>> Integer.SIZE);
+  }
+
+  int getPosition(int rank) {
+    return positions[rank];
+  }
+
+  private static long key(int sharedMinimizers, int position) {
+    return ((long) sharedMinimizers << Integer.SIZE) | (0xFFFFFFFFL - position);
+  }
+
+  private void siftUp(int index) {
+    while (index > 0) {
+      int parent = (index - 1) >>> 1;
+      if (keys[parent] <= keys[index]) {
+        return;
+      }
+      swap(parent, index);
+      index = parent;
+    }
+  }
+
+  private void siftDown(int index, int end) {
+    while (true) {
+      int child = 2 * index + 1;
+      if (child >= end) {
+        return;
+      }
+      if (child + 1 < end && keys[child + 1] < keys[child]) {
+        child++;
+      }
+      if (keys[index] <= keys[child]) {
+        return;
+      }
+      swap(index, child);
+      index = child;
+    }
+  }
+
+  private void swap(int i, int j) {
+    long key = keys[i];
+    keys[i] = keys[j];
+    keys[j] = key;
+    int position = positions[i];
+    positions[i] = positions[j];
+    positions[j] = position;
+  }
+}
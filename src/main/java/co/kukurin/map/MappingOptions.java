@@ -0,0 +1,71 @@
+package co.kukurin.map;
+
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import lombok.Getter;
+
+/**
+ * Options of {@link QueryMapper} which do not affect the similarity estimate itself.
+ */
+@Getter
+public class MappingOptions {
+
+  private static final MappingOptions DEFAULTS = new MappingOptions(1, 0, 0, null);
+
+  /**
+   * Maximum number of mappings reported per query, or non-positive to report all above tau.
+   */
+  private final int maxMappings;
+  /**
+   * Length of segments long queries are split into, or non-positive to map queries whole.
+   */
+  private final int segmentLength;
+  /**
+   * Number of best mappings per query verified at base level, see {@link MappingVerifier}.
+   */
+  private final int verifiedMappings;
+  private final Executor segmentExecutor;
+
+  private MappingOptions(int maxMappings, int segmentLength, int verifiedMappings,
+      Executor segmentExecutor) {
+    this.maxMappings = maxMappings;
+    this.segmentLength = segmentLength;
+    this.verifiedMappings = verifiedMappings;
+    this.segmentExecutor = segmentExecutor;
+  }
+
+  /**
+   * @return options reporting the best mapping of whole queries.
+   */
+  public static MappingOptions defaults() {
+    return DEFAULTS;
+  }
+
+  public MappingOptions withMaxMappings(int maxMappings) {
+    return new MappingOptions(maxMappings, segmentLength, verifiedMappings, segmentExecutor);
+  }
+
+  public MappingOptions withSegmentLength(int segmentLength) {
+    return new MappingOptions(maxMappings, segmentLength, verifiedMappings, segmentExecutor);
+  }
+
+  /**
+   * @return options verifying up to given number of best mappings per query, which requires an
+   * index holding the reference bases.
+   */
+  public MappingOptions withVerifiedMappings(int verifiedMappings) {
+    return new MappingOptions(maxMappings, segmentLength, verifiedMappings, segmentExecutor);
+  }
+
+  /**
+   * @return options mapping segments of a single query in parallel on given executor, rather than
+   * on the thread mapping the query.
+   */
+  public MappingOptions withSegmentExecutor(Executor segmentExecutor) {
+    return new MappingOptions(maxMappings, segmentLength, verifiedMappings, segmentExecutor);
+  }
+
+  public Optional<Executor> getSegmentExecutor() {
+    return Optional.ofNullable(segmentExecutor);
+  }
+}
@@ -0,0 +1,70 @@
+package co.kukurin.map;
+
+import co.kukurin.align.Alignment;
+import co.kukurin.align.MyersAligner;
+import co.kukurin.fasta.SequenceRecord;
+import co.kukurin.index.PackedSequence;
+import co.kukurin.index.ReferenceSequences;
+import co.kukurin.map.ReadMapper.ReadMapperResult;
+
+/**
+ * Verifies estimated mappings at base level: the query interval the mapping covers, reverse
+ * complemented for mappings to the reverse strand, is aligned with {@link MyersAligner} to the
+ * reference around the estimated interval, which yields the exact edit distance and the aligned
+ * reference interval.
+ *
+ * <p>The estimated interval is extended on both sides by the window size, as the estimate is only
+ * as precise as the minimizer spacing, and by twice the number of edits the estimated identity
+ * implies, as indels shift the ends of the alignment. Instances are thread safe.
+ */
+class MappingVerifier {
+
+  private final ReferenceSequences sequences;
+  private final PackedSequence bases;
+  private final int windowSize;
+  private final ThreadLocal<MyersAligner> aligners = ThreadLocal.withInitial(MyersAligner::new);
+
+  MappingVerifier(ReferenceSequences sequences, PackedSequence bases, int windowSize) {
+    this.sequences = sequences;
+    this.bases = bases;
+    this.windowSize = windowSize;
+  }
+
+  /**
+   * @return given mapping with its reference interval refined by alignment and its identity
+   * computed as {@code 1 - editDistance / max(query interval length, aligned reference length)}.
+   */
+  ReadMapperResult verify(SequenceRecord query, ReadMapperResult mapping) {
+    int queryStart = mapping.getQueryStart();
+    int queryEnd = mapping.queryEnd(query.getLength());
+    int queryLength = queryEnd - queryStart;
+    byte[] codes = new byte[queryLength];
+    byte[] queryBases = query.getBases();
+    for (int i = 0; i < queryLength; i++) {
+      codes[i] = mapping.isReverseStrand()
+          ? complement(PackedSequence.code(queryBases[queryEnd - 1 - i]))
+          : PackedSequence.code(queryBases[queryStart + i]);
+    }
+
+    int sequenceStart = sequences.getStart(mapping.getSequence());
+    int margin = windowSize + (int) Math.ceil(2 * (1 - mapping.getNucIdentity()) * queryLength);
+    long from = (long) sequenceStart + mapping.getIndex() - margin;
+    long to = (long) sequenceStart + mapping.getIndex() + queryLength + margin;
+    Alignment alignment = aligners.get().align(codes, queryLength, bases,
+        (int) Math.max(sequenceStart, from),
+        (int) Math.min(sequences.getEnd(mapping.getSequence()), to));
+
+    int alignedLength = Math.max(queryLength, alignment.getEnd() - alignment.getStart());
+    double identity = alignedLength == 0
+        ? 0
+        : 1 - (double) alignment.getEditDistance() / alignedLength;
+    return new ReadMapperResult(mapping.getSequence(), mapping.getSequenceName(),
+        alignment.getStart() - sequenceStart, mapping.isReverseStrand(),
+        mapping.getJaccardEstimate(), identity, alignment.getEnd() - sequenceStart,
+        alignment.getEditDistance(), mapping.getQueryStart(), mapping.getQueryEnd());
+  }
+
+  private static byte complement(byte code) {
+    return code == PackedSequence.UNKNOWN ? code : (byte) (PackedSequence.T - code);
+  }
+}
@@ -0,0 +1,183 @@
+package co.kukurin.map;
+
+import co.kukurin.ParameterSupplier;
+import co.kukurin.ParameterSupplier.ConstantParameters;
+import co.kukurin.benchmark.PipelineMetrics;
+import co.kukurin.benchmark.PipelineMetrics.Stage;
+import co.kukurin.fasta.SequenceRecord;
+import co.kukurin.hash.Minimizer;
+import co.kukurin.hash.MinimizerArray;
+import co.kukurin.hash.SequenceKmers;
+import co.kukurin.index.ReferenceIndex;
+import co.kukurin.map.ReadMapper.ReadMapperResult;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Maps whole query records against a reference index. Instances are thread safe, the reference
+ * index is only ever read.
+ *
+ * <p>Queries at least twice the {@link MappingOptions#getSegmentLength() segment length} long are
+ * split into segments, the last one aligned to the end of the query. Segments are mapped
+ * independently, so the cost of sliding a window is bounded regardless of query length, and their
+ * mappings are chained back into mappings of the whole query (see {@link SegmentChainer}).
+ *
+ * <p>The best {@link MappingOptions#getVerifiedMappings() verified mappings} of a query are then
+ * aligned at base level (see {@link MappingVerifier}); their order is kept.
+ */
+public class QueryMapper {
+
+  // alternatives kept per segment, so that a repeat does not break the chain of the best mapping
+  private static final int SEGMENT_MAPPINGS = 3;
+
+  private final ReferenceIndex referenceIndex;
+  private final ConstantParameters constantParameters;
+  private final Minimizer minimizer;
+  private final PipelineMetrics metrics;
+  private final MappingOptions options;
+  private final MappingVerifier verifier;
+  private final ThreadLocal<MappingBuffers> buffers = ThreadLocal.withInitial(MappingBuffers::new);
+
+  public QueryMapper(ReferenceIndex referenceIndex, ConstantParameters constantParameters) {
+    this(referenceIndex, constantParameters, new PipelineMetrics());
+  }
+
+  public QueryMapper(
+      ReferenceIndex referenceIndex,
+      ConstantParameters constantParameters,
+      PipelineMetrics metrics) {
+    this(referenceIndex, constantParameters, metrics, MappingOptions.defaults());
+  }
+
+  /**
+   * @throws IllegalArgumentException if mappings are to be verified, but the index holds no
+   * reference bases.
+   */
+  public QueryMapper(
+      ReferenceIndex referenceIndex,
+      ConstantParameters constantParameters,
+      PipelineMetrics metrics,
+      MappingOptions options) {
+    this.referenceIndex = referenceIndex;
+    this.constantParameters = constantParameters;
+    this.minimizer =
+        new Minimizer(constantParameters.getWindowSize(), referenceIndex.getHashThreshold());
+    this.metrics = metrics;
+    this.options = options;
+    this.verifier = options.getVerifiedMappings() > 0
+        ? new MappingVerifier(referenceIndex.getSequences(),
+            referenceIndex.getBases().orElseThrow(() -> new IllegalArgumentException(
+                "Reference index holds no bases to verify mappings against, "
+                    + "build it with --verify")),
+            constantParameters.getWindowSize())
+        : null;
+  }
+
+  /**
+   * @return best estimated match of given query, if any.
+   */
+  public Optional<ReadMapperResult> map(SequenceRecord query) throws IOException {
+    List<ReadMapperResult> mappings = map(query, 1);
+    return mappings.isEmpty() ? Optional.empty() : Optional.of(mappings.get(0));
+  }
+
+  /**
+   * @return estimated matches of given query, best first, up to {@link
+   * MappingOptions#getMaxMappings()}.
+   * @see ReadMapper#findMappings
+   */
+  public List<ReadMapperResult> mapAll(SequenceRecord query) throws IOException {
+    return map(query, options.getMaxMappings());
+  }
+
+  private List<ReadMapperResult> map(SequenceRecord query, int maxMappings) throws IOException {
+    long start = System.nanoTime();
+    // 4.3. "to maximize effectiveness of the filter, we set sketch size s = |W_h(A)|
+    MinimizerArray queryHashes = minimizer.minimize(new SequenceKmers(
+        query.getBases(), query.getLength(), constantParameters.getKmerSize()));
+    metrics.recordStage(Stage.SKETCH, System.nanoTime() - start);
+
+    int segmentLength = options.getSegmentLength();
+    List<ReadMapperResult> mappings = segmentLength > 0 && query.getLength() >= 2 * segmentLength
+        ? mapSegments(queryHashes, query.getLength(), segmentLength, maxMappings)
+        : mapRange(queryHashes, 0, queryHashes.size(), query.getLength(), maxMappings);
+    if (!mappings.isEmpty()) {
+      metrics.recordMapped();
+    }
+
+    if (verifier != null && !mappings.isEmpty()) {
+      long verifyStart = System.nanoTime();
+      mappings = new ArrayList<>(mappings);
+      for (int i = 0; i < Math.min(mappings.size(), options.getVerifiedMappings()); i++) {
+        mappings.set(i, verifier.verify(query, mappings.get(i)));
+      }
+      metrics.recordStage(Stage.VERIFY, System.nanoTime() - verifyStart);
+    }
+
+    return mappings;
+  }
+
+  private List<ReadMapperResult> mapSegments(
+      MinimizerArray queryHashes, int queryLength, int segmentLength, int maxMappings) {
+    int segments = queryLength / segmentLength;
+    int segmentMappings = maxMappings > 0 ? Math.max(maxMappings, SEGMENT_MAPPINGS) : 0;
+    List<CompletableFuture<List<ReadMapperResult>>> futures = new ArrayList<>(segments);
+    Optional<Executor> executor = options.getSegmentExecutor();
+
+    for (int segment = 0; segment < segments; segment++) {
+      int offset = segmentOffset(segment, segments, queryLength, segmentLength);
+      // minimizers whose k-mers lie entirely within the segment
+      int from = queryHashes.indexOfFirstPositionGte(offset);
+      int to = queryHashes.indexOfFirstPositionGte(
+          offset + segmentLength - constantParameters.getKmerSize() + 1);
+      futures.add(executor.isPresent()
+          ? CompletableFuture.supplyAsync(() ->
+              mapRange(queryHashes, from, to, segmentLength, segmentMappings), executor.get())
+          : CompletableFuture.completedFuture(
+              mapRange(queryHashes, from, to, segmentLength, segmentMappings)));
+    }
+
+    SegmentChainer chainer = new SegmentChainer(queryLength, segmentLength, segments);
+    for (int segment = 0; segment < segments; segment++) {
+      int offset = segmentOffset(segment, segments, queryLength, segmentLength);
+      for (ReadMapperResult mapping : futures.get(segment).join()) {
+        chainer.add(segment, offset, mapping);
+      }
+    }
+    return chainer.chain(maxMappings);
+  }
+
+  private static int segmentOffset(int segment, int segments, int queryLength, int segmentLength) {
+    return segment == segments - 1 ? queryLength - segmentLength : segment * segmentLength;
+  }
+
+  /**
+   * Maps the part of a query holding minimizers [from, to) of the query.
+   */
+  private List<ReadMapperResult> mapRange(
+      MinimizerArray queryHashes, int from, int to, int length, int maxMappings) {
+    long start = System.nanoTime();
+    long[] uniqueHashes = queryHashes.uniqueHashes(from, to);
+    int[] strandVotes = queryHashes.strandVotes(uniqueHashes, from, to);
+
+    ParameterSupplier parameterSupplier = new ParameterSupplier(
+        constantParameters, length, uniqueHashes.length);
+
+    ReadMapper readMapper = new ReadMapper(parameterSupplier);
+    MappingBuffers mappingBuffers = buffers.get();
+    CandidateRegions candidateRegions =
+        readMapper.collectCandidateRegions(uniqueHashes, referenceIndex, mappingBuffers);
+    long collected = System.nanoTime();
+    metrics.recordStage(Stage.CANDIDATES, collected - start);
+    metrics.recordCandidates(mappingBuffers.hitCount(), candidateRegions.size());
+
+    List<ReadMapperResult> mappings = readMapper.findMappings(
+        referenceIndex, uniqueHashes, strandVotes, candidateRegions, maxMappings);
+    metrics.recordStage(Stage.WINDOW_SCAN, System.nanoTime() - collected);
+    return mappings;
+  }
+}
@@ -1,19 +1,15 @@
 package co.kukurin.map;
 
 import co.kukurin.ParameterSupplier;
-import co.kukurin.hash.Hash;
-import co.kukurin.hash.Minimizer.MinimizerValue;
+import co.kukurin.index.ReferenceIndex;
+import co.kukurin.index.ReferenceSequences;
 import co.kukurin.stat.StatUtils;
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
-import java.util.Stack;
-import java.util.function.ToIntFunction;
-import java.util.stream.Collectors;
+import lombok.AllArgsConstructor;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
 import lombok.Value;
@@ -37,42 +33,123 @@ public class ReadMapper {
   }
 
   /**
-   * Output of read mapper.
+   * Output of read mapper. Index is a position within the reference sequence, given both by its
+   * number in {@link ReferenceSequences} and its name; the query maps to the reverse complement of
+   * the reference if {@code reverseStrand} is set.
+   *
+   * <p>Mappings cover the whole query, unless a query interval is given; mappings chained from
+   * segments of a query (see {@link SegmentChainer}) cover the segments in the chain only. Index
+   * is then where the covered interval, rather than the whole query, maps to.
+   *
+   * <p>Estimated mappings span as many reference bases as the query interval has. Mappings
+   * verified at base level (see {@link MappingVerifier}) also hold the end of the aligned reference
+   * interval and the edit distance of the alignment, from which their identity is computed.
    */
   @Value
   @ToString
+  @AllArgsConstructor
   public static class ReadMapperResult {
 
+    private int sequence;
+    private String sequenceName;
     private int index;
+    private boolean reverseStrand;
     private double jaccardEstimate;
     private double nucIdentity;
+    // within the reference sequence, exclusive; -1 unless verified
+    private int alignmentEnd;
+    // -1 unless verified
+    private int editDistance;
+    private int queryStart;
+    // exclusive; -1 for the end of the query
+    private int queryEnd;
+
+    /**
+     * Constructs an estimated mapping of the whole query.
+     */
+    public ReadMapperResult(int sequence, String sequenceName, int index, boolean reverseStrand,
+        double jaccardEstimate, double nucIdentity) {
+      this(sequence, sequenceName, index, reverseStrand, jaccardEstimate, nucIdentity, -1, -1);
+    }
+
+    /**
+     * Constructs a mapping of the whole query.
+     */
+    public ReadMapperResult(int sequence, String sequenceName, int index, boolean reverseStrand,
+        double jaccardEstimate, double nucIdentity, int alignmentEnd, int editDistance) {
+      this(sequence, sequenceName, index, reverseStrand, jaccardEstimate, nucIdentity,
+          alignmentEnd, editDistance, 0, -1);
+    }
+
+    public boolean isVerified() {
+      return editDistance >= 0;
+    }
+
+    /**
+     * @return end of the query interval this mapping covers, exclusive.
+     */
+    public int queryEnd(int queryLength) {
+      return queryEnd < 0 ? queryLength : queryEnd;
+    }
+
+    /**
+     * @return end of the reference interval the query maps to, exclusive and not clipped to the
+     * sequence length.
+     */
+    public int targetEnd(int queryLength) {
+      return isVerified() ? alignmentEnd : index + queryEnd(queryLength) - queryStart;
+    }
   }
 
   private final ParameterSupplier parameterSupplier;
 
   /**
-   * @param queryHashes Hashes obtained from query read.
-   * @param hashToReferenceReadIndices map [hash value -> list of indices where the hash is found in
-   * the reference read]
-   * @return candidate regions which are estimated to evaluate to desired Jaccard values.
+   * @see #collectCandidateRegions(long[], ReferenceIndex, MappingBuffers)
    */
-  public List<CandidateRegion> collectCandidateRegions(
-      Set<Hash> queryHashes, Map<Hash, Collection<Integer>> hashToReferenceReadIndices) {
+  public CandidateRegions collectCandidateRegions(long[] queryHashes, ReferenceIndex reference) {
+    return collectCandidateRegions(queryHashes, reference, new MappingBuffers());
+  }
+
+  /**
+   * @param queryHashes Distinct hashes obtained from query read.
+   * @param reference Reference index, used to find [hash value -> positions where the hash is
+   * found in the reference] and reference sequence boundaries.
+   * @param buffers Scratch space; the returned regions are owned by it and overwritten by the next
+   * call using the same buffers.
+   * @return candidate regions which are estimated to evaluate to desired Jaccard values. Regions
+   * never span multiple reference sequences. Hashes above the reference occurrence cutoff do not
+   * seed regions. Each region is bounded by the number of hits its windows can cover.
+   */
+  public CandidateRegions collectCandidateRegions(
+      long[] queryHashes, ReferenceIndex reference, MappingBuffers buffers) {
     int sketchSize = parameterSupplier.getSketchSize();
     double tau = parameterSupplier.getConstantParameters().getTau();
-    int minShared = (int) Math.ceil(sketchSize * tau);
-    List<Integer> sortedIndicesInReference =
-        queryHashes
-            .stream()
-            .filter(hashToReferenceReadIndices::containsKey)
-            .flatMap(val -> hashToReferenceReadIndices.get(val).stream())
-            .sorted()
-            .collect(Collectors.toList());
-    Stack<CandidateRegion> result = new Stack<>();
-    for (int i = 0; i <= sortedIndicesInReference.size() - minShared; i++) {
+    int hitCount = buffers.collectHits(
+        queryHashes, reference.getMinimizerIndex(), reference.getMaxOccurrences());
+    // filtered hashes may be shared anywhere, so assume they are shared by every window
+    int minShared = Math.max(1,
+        (int) Math.ceil(sketchSize * tau) - buffers.filteredHashes());
+    int[] sortedIndicesInReference = buffers.hits();
+    ReferenceSequences sequences = reference.getSequences();
+    int sequenceStart = 0;
+    int sequenceEnd = 0;
+    CandidateRegions result = buffers.regions();
+    result.clear();
+    for (int i = 0; i <= hitCount - minShared; i++) {
       int j = i + (minShared - 1);
-      int indexHi = sortedIndicesInReference.get(j);
-      int indexLo = sortedIndicesInReference.get(i);
+      int indexHi = sortedIndicesInReference[j];
+      int indexLo = sortedIndicesInReference[i];
+
+      if (indexLo >= sequenceEnd) {
+        int sequence = sequences.sequenceOf(indexLo);
+        sequenceStart = sequences.getStart(sequence);
+        sequenceEnd = sequences.getEnd(sequence);
+      }
+
+      // hits from L[i] to L[j] are spread over multiple reference sequences
+      if (indexHi >= sequenceEnd) {
+        continue;
+      }
 
       // indexHi and indexLo represent indices in reference read B.
       // size of intersect(A, B) in B from L[i] to L[j] is constant (= minShared).
@@ -80,97 +157,237 @@ public class ReadMapper {
       // read B from index position (L[j] - |A|).
       int minDistance = parameterSupplier.getQueryLength();
       if (indexHi - indexLo < minDistance) {
-        int low = indexHi - minDistance + 1;
-
-        if (!result.isEmpty() && overlaps(result.peek(), low)) {
-          low = result.pop().getLow();
-        }
+        // overlapping regions are merged on insertion
+        result.add(Math.max(sequenceStart, indexHi - minDistance + 1), indexLo);
+      }
+    }
 
-        result.push(new CandidateRegion(Math.max(0, low), indexLo));
+    // a window shares at most the hits it covers, plus hashes whose hits were filtered out
+    int windowSpan = windowSpan();
+    int first = 0;
+    int last = 0;
+    for (int region = 0; region < result.size(); region++) {
+      while (first < hitCount && sortedIndicesInReference[first] < result.getLow(region)) {
+        first++;
+      }
+      long windowsEnd = (long) result.getHigh(region) + windowSpan;
+      last = Math.max(last, first);
+      while (last < hitCount && sortedIndicesInReference[last] <= windowsEnd) {
+        last++;
       }
+      result.setBound(region, Math.min(sketchSize, last - first + buffers.filteredHashes()));
     }
 
     return result;
   }
 
-  private boolean overlaps(CandidateRegion region, int low) {
-    return region.getHigh() >= low;
-  }
-
   /**
    * Final step in the mapping, finds best match.
    *
-   * @param reference Minimizer values collected from reference read (sorted ascending by index).
-   * @param query Minimizer values collected from the query (sorted ascending by index).
-   * @param candidateRegions Candidate regions obtained from {@link #collectCandidateRegions(Set,
-   * Map)}
    * @return Best estimated match.
+   * @see #findMappings(ReferenceIndex, long[], int[], CandidateRegions, int)
    */
   public Optional<ReadMapperResult> findMostLikelyMatch(
-      List<MinimizerValue> reference,
-      List<MinimizerValue> query,
-      List<CandidateRegion> candidateRegions) {
+      ReferenceIndex reference,
+      long[] queryHashes,
+      int[] queryStrandVotes,
+      CandidateRegions candidateRegions) {
+    List<ReadMapperResult> mappings =
+        findMappings(reference, queryHashes, queryStrandVotes, candidateRegions, 1);
+    return mappings.isEmpty() ? Optional.empty() : Optional.of(mappings.get(0));
+  }
+
+  /**
+   * Final step in the mapping, finds the best match and, optionally, alternative matches such as
+   * other copies of a repeat.
+   *
+   * <p>A window of the query's length slides over each candidate region; only window positions at
+   * which a reference minimizer enters or leaves the window are evaluated. Alternative matches are
+   * local maxima of shared minimizers whose Jaccard estimate is at least tau: windows overlapping
+   * the window of the current maximum are merged into it, so neighbouring positions of one match
+   * are reported once. They are selected with a bounded heap, in O(log maxMappings) time
+   * per local maximum.
+   *
+   * <p>Regions are visited best-first by their bound on shared minimizers. A region is skipped
+   * once its bound cannot outrank the best match (or, with a full heap, the worst kept match), and
+   * the scan of a region stops once the best match reaches its bound, e.g. the sketch size. Ties
+   * rank by ascending position, so the result equals that of a scan in positional order.
+   *
+   * @param reference Reference index, holding minimizer values collected from reference read.
+   * @param queryHashes Distinct hashes obtained from query read, sorted ascending.
+   * @param queryStrandVotes For each query hash, the sum of strands it was found on in the query.
+   * @param candidateRegions Candidate regions obtained from {@link
+   * #collectCandidateRegions(long[], ReferenceIndex, MappingBuffers)}; reordered by this call.
+   * @param maxMappings Maximum number of matches reported, or non-positive to report all matches
+   * above tau.
+   * @return Estimated matches, best first. The best match is reported even if below tau.
+   */
+  public List<ReadMapperResult> findMappings(
+      ReferenceIndex reference,
+      long[] queryHashes,
+      int[] queryStrandVotes,
+      CandidateRegions candidateRegions,
+      int maxMappings) {
+    ReferenceSequences sequences = reference.getSequences();
+    SketchMap sketchMap = new SketchMap(queryHashes);
+    int sketchSize = parameterSupplier.getSketchSize();
     int index = -1;
     int maxMinimizers = 0;
 
-    for (CandidateRegion candidateRegion : candidateRegions) {
-      int windowStart = candidateRegion.getLow();
-      // max potential elements stored during minimization
-      int windowEnd = windowStart + parameterSupplier.getQueryLength()
-          - parameterSupplier.getConstantParameters().getWindowSize() + 1
-          - parameterSupplier.getConstantParameters().getKmerSize() + 1;
+    int windowSpan = windowSpan();
 
-      SketchMap sketchMap = new SketchMap(query);
-      int minimizersStartIndex = binaryFindIndexOfFirstGteValue(
-          reference, MinimizerValue::getOriginalIndex, windowStart);
-      int minimizersEndIndex = binaryFindIndexOfFirstGteValue(
-          reference, MinimizerValue::getOriginalIndex, windowEnd);
+    // only the best match is tracked unless alternatives are requested
+    MappingHeap mappingHeap = maxMappings == 1 ? null : new MappingHeap(maxMappings);
+    int minShared = Math.max(1,
+        (int) Math.ceil(sketchSize * parameterSupplier.getConstantParameters().getTau()));
 
-      while (windowStart <= candidateRegion.getHigh()) {
-        // throw out values leaving window
-        if (minimizersStartIndex < reference.size()
-            && reference.get(minimizersStartIndex).getOriginalIndex() <= windowStart) {
-          sketchMap.removeReference(reference.get(minimizersStartIndex));
-          minimizersStartIndex++;
+    candidateRegions.sortBestFirst();
+    for (int rank = 0; rank < candidateRegions.size(); rank++) {
+      int region = candidateRegions.bestFirst(rank);
+      int windowStart = candidateRegions.getLow(region);
+      int bound = Math.min(sketchSize, candidateRegions.getBound(region));
+      if (mappingHeap == null) {
+        // following regions have lower bounds still
+        if (bound < maxMinimizers) {
+          break;
+        }
+        if (bound == maxMinimizers && windowStart > index) {
+          continue;
         }
+      } else if (!mappingHeap.accepts(bound, windowStart)) {
+        continue;
+      }
+
+      int windowStartLimit = candidateRegions.getHigh(region);
+      int sequence = sequences.sequenceOf(windowStart);
+      // minimizers of following sequences never enter the window
+      int minimizersLimit = Math.min(
+          reference.indexOfFirstMinimizerGte(sequences.getEnd(sequence)),
+          reference.indexOfFirstMinimizerGte(windowStartLimit + windowSpan + 1));
+
+      // window holds minimizers [minimizersStartIndex, minimizersEndIndex)
+      int minimizersStartIndex = reference.indexOfFirstMinimizerGte(windowStart);
+      int minimizersEndIndex = minimizersStartIndex;
+      sketchMap.reset(reference, minimizersStartIndex, minimizersLimit);
+      int peak = -1;
+      int peakShared = 0;
+
+      while (windowStart <= windowStartLimit) {
+        int windowEnd = windowStart + windowSpan;
 
         // insert values entering window
-        if (minimizersEndIndex < reference.size()
-            && reference.get(minimizersEndIndex).getOriginalIndex() <= windowEnd) {
-          sketchMap.putReference(reference.get(minimizersEndIndex));
-          minimizersEndIndex++;
+        while (minimizersEndIndex < minimizersLimit
+            && reference.getMinimizerPosition(minimizersEndIndex) <= windowEnd) {
+          sketchMap.putReference(minimizersEndIndex++);
+        }
+
+        // throw out values leaving window
+        while (minimizersStartIndex < minimizersEndIndex
+            && reference.getMinimizerPosition(minimizersStartIndex) < windowStart) {
+          sketchMap.removeReference(minimizersStartIndex++);
         }
 
-        int sharedMinimizers = sketchMap.getSharedMinimizers(parameterSupplier.getSketchSize());
-        if (sharedMinimizers > maxMinimizers) {
+        int sharedMinimizers = sketchMap.getSharedMinimizers(sketchSize);
+        if (sharedMinimizers > maxMinimizers
+            || (sharedMinimizers == maxMinimizers && windowStart < index)) {
           index = windowStart;
           maxMinimizers = sharedMinimizers;
         }
 
-        // skip until first following window with
-        int deltaStart = reference.get(minimizersStartIndex).getOriginalIndex() - windowStart;
-        int deltaEnd = minimizersEndIndex < reference.size()
-            ? reference.get(minimizersEndIndex).getOriginalIndex() - windowEnd + 1 : 1;
-        int skip = Math.min(deltaStart, deltaEnd);
+        if (mappingHeap != null) {
+          if (peak >= 0 && windowStart - peak > windowSpan) {
+            mappingHeap.offer(peakShared, peak);
+            peak = -1;
+          }
+          if (sharedMinimizers >= minShared && (peak < 0 || sharedMinimizers > peakShared)) {
+            peak = windowStart;
+            peakShared = sharedMinimizers;
+          }
+        }
+
+        // following windows of the region cannot outrank the best match
+        if (mappingHeap == null && maxMinimizers >= bound && index <= windowStart) {
+          break;
+        }
+
+        // skip to the first following window whose contents differ
+        long nextStart = Long.MAX_VALUE;
+        if (minimizersStartIndex < minimizersEndIndex) {
+          nextStart = reference.getMinimizerPosition(minimizersStartIndex) + 1L;
+        }
+        if (minimizersEndIndex < minimizersLimit) {
+          nextStart = Math.min(nextStart,
+              reference.getMinimizerPosition(minimizersEndIndex) - (long) windowSpan);
+        }
+
+        if (nextStart > windowStartLimit) {
+          break;
+        }
+        windowStart = Math.max(windowStart + 1, (int) nextStart);
+      }
 
-        windowStart += skip;
-        windowEnd += skip;
+      if (peak >= 0) {
+        mappingHeap.offer(peakShared, peak);
       }
     }
 
+    if (index == -1) {
+      return Collections.emptyList();
+    }
+
+    // the best match is the top of the heap, unless it is below tau
+    if (mappingHeap == null || mappingHeap.size() == 0) {
+      return Collections.singletonList(toMapperResult(
+          reference, queryHashes, queryStrandVotes, index, maxMinimizers, windowSpan));
+    }
+
+    mappingHeap.sortDescending();
+    List<ReadMapperResult> mappings = new ArrayList<>(mappingHeap.size());
+    for (int rank = 0; rank < mappingHeap.size(); rank++) {
+      mappings.add(toMapperResult(reference, queryHashes, queryStrandVotes,
+          mappingHeap.getPosition(rank), mappingHeap.getSharedMinimizers(rank), windowSpan));
+    }
+    return mappings;
+  }
+
+  /**
+   * @return distance between the first and the last position of a window the length of the query.
+   */
+  private int windowSpan() {
+    return Math.max(0, parameterSupplier.getQueryLength()
+        - parameterSupplier.getConstantParameters().getWindowSize() + 1
+        - parameterSupplier.getConstantParameters().getKmerSize() + 1);
+  }
+
+  private ReadMapperResult toMapperResult(ReferenceIndex reference, long[] queryHashes,
+      int[] queryStrandVotes, int index, int sharedMinimizers, int windowSpan) {
+    ReferenceSequences sequences = reference.getSequences();
+    int sequence = sequences.sequenceOf(index);
     int kmerSize = parameterSupplier.getConstantParameters().getKmerSize();
-    double jaccard = (1.0 * maxMinimizers) / parameterSupplier.getSketchSize();
-    return index == -1
-        ? Optional.empty()
-        : Optional.of(StatUtils.toMapperResult(index, jaccard, kmerSize));
+    double jaccard = (1.0 * sharedMinimizers) / parameterSupplier.getSketchSize();
+    boolean reverseStrand = strandVote(reference, queryHashes, queryStrandVotes,
+        index, Math.min(index + windowSpan + 1, sequences.getEnd(sequence))) < 0;
+    return StatUtils.toMapperResult(sequence, sequences.getName(sequence),
+        index - sequences.getStart(sequence), reverseStrand, jaccard, kmerSize);
   }
 
-  private int binaryFindIndexOfFirstGteValue(
-      List<MinimizerValue> index,
-      ToIntFunction<MinimizerValue> intComparator,
-      int startingKey) {
-    int i = Collections.binarySearch(
-        index, new MinimizerValue(startingKey, null), Comparator.comparingInt(intComparator));
-    return i < 0 ? -i : i;
+  /**
+   * Each query hash shared with a reference minimizer within [from, to) votes for the relative
+   * orientation of the query: forward if both are found on the same strand, reverse otherwise.
+   *
+   * @return sum of votes, negative if the query maps to the reverse strand.
+   */
+  private int strandVote(ReferenceIndex reference, long[] queryHashes, int[] queryStrandVotes,
+      int from, int to) {
+    int vote = 0;
+    for (int i = reference.indexOfFirstMinimizerGte(from);
+        i < reference.minimizerCount() && reference.getMinimizerPosition(i) < to;
+        i++) {
+      int queryIndex = Arrays.binarySearch(queryHashes, reference.getMinimizerHash(i));
+      if (queryIndex >= 0) {
+        vote += Integer.signum(queryStrandVotes[queryIndex]) * reference.getMinimizerStrand(i);
+      }
+    }
+    return vote;
   }
 }
@@ -0,0 +1,154 @@
+package co.kukurin.map;
+
+import co.kukurin.map.ReadMapper.ReadMapperResult;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Chains mappings of fixed-length query segments back into mappings of the whole query.
+ *
+ * <p>Each segment mapping projects where the query would start on the reference: for a segment at
+ * query offset {@code o} mapped to position {@code p}, at {@code p - o} on the forward strand and
+ * at {@code p + o + segmentLength - queryLength} on the reverse strand. Segment mappings on the
+ * same sequence and strand whose projected starts are at most a segment length apart belong to one
+ * chain, which tolerates indels accumulating along the query. Chains are ranked by the number of
+ * segments they contain, then by their mean Jaccard estimate; a query spanning a structural
+ * variant yields one chain per side.
+ *
+ * <p>A chain maps the query interval from its first segment to its last one, not the whole query.
+ * Chains other than the best need the support of at least two segments and a quarter of all
+ * segments, so that a single segment hitting a repeat is not reported as an alternative mapping.
+ */
+class SegmentChainer {
+
+  private static final double MIN_SECONDARY_SUPPORT = 0.25;
+
+  private final int queryLength;
+  private final int segmentLength;
+  private final int segments;
+  private final List<long[]> keys = new ArrayList<>();
+  private final List<ReadMapperResult> results = new ArrayList<>();
+
+  /**
+   * @param segments number of segments the query was split into.
+   */
+  SegmentChainer(int queryLength, int segmentLength, int segments) {
+    this.queryLength = queryLength;
+    this.segmentLength = segmentLength;
+    this.segments = segments;
+  }
+
+  void add(int segment, int offset, ReadMapperResult result) {
+    long projectedStart = result.isReverseStrand()
+        ? (long) result.getIndex() + offset + segmentLength - queryLength
+        : (long) result.getIndex() - offset;
+    keys.add(new long[]{result.getSequence(), result.isReverseStrand() ? 1 : 0, projectedStart,
+        segment, results.size(), offset});
+    results.add(result);
+  }
+
+  /**
+   * @param maxMappings maximum number of chains returned, or non-positive for all.
+   * @return mappings of the whole query, best first.
+   */
+  List<ReadMapperResult> chain(int maxMappings) {
+    keys.sort(Comparator.<long[]>comparingLong(key -> key[0])
+        .thenComparingLong(key -> key[1])
+        .thenComparingLong(key -> key[2]));
+
+    List<Chain> chains = new ArrayList<>();
+    int chainStart = 0;
+    for (int i = 1; i <= keys.size(); i++) {
+      if (i == keys.size() || !sameChain(keys.get(i - 1), keys.get(i))) {
+        chains.add(new Chain(chainStart, i));
+        chainStart = i;
+      }
+    }
+
+    chains.sort(Comparator.comparingInt((Chain chain) -> chain.segmentCount).reversed()
+        .thenComparing(Comparator.comparingDouble((Chain chain) -> chain.jaccard).reversed()));
+
+    int limit = maxMappings > 0 ? Math.min(maxMappings, chains.size()) : chains.size();
+    int minSecondarySegments = Math.max(2, (int) Math.ceil(MIN_SECONDARY_SUPPORT * segments));
+    List<ReadMapperResult> mappings = new ArrayList<>(limit);
+    // chains are sorted by segment count, so the rest are supported by even fewer segments
+    for (int i = 0; i < limit && (i == 0 || chains.get(i).segmentCount >= minSecondarySegments);
+        i++) {
+      mappings.add(chains.get(i).toMapperResult());
+    }
+    return mappings;
+  }
+
+  private boolean sameChain(long[] previous, long[] next) {
+    return previous[0] == next[0]
+        && previous[1] == next[1]
+        && next[2] - previous[2] <= segmentLength;
+  }
+
+  private class Chain {
+
+    final int from;
+    final int to;
+    final int segmentCount;
+    final double jaccard;
+    final double identity;
+    final int queryStart;
+    final int queryEnd;
+
+    /**
+     * Chain of sorted keys [from, to). A segment mapped more than once within the chain counts
+     * once, with its best estimate.
+     */
+    Chain(int from, int to) {
+      this.from = from;
+      this.to = to;
+
+      double[] bestJaccard = new double[segments];
+      double[] bestIdentity = new double[segments];
+      Arrays.fill(bestJaccard, -1);
+      int firstOffset = Integer.MAX_VALUE;
+      int lastOffset = 0;
+      for (int i = from; i < to; i++) {
+        int segment = (int) keys.get(i)[3];
+        firstOffset = Math.min(firstOffset, (int) keys.get(i)[5]);
+        lastOffset = Math.max(lastOffset, (int) keys.get(i)[5]);
+        ReadMapperResult result = results.get((int) keys.get(i)[4]);
+        if (result.getJaccardEstimate() > bestJaccard[segment]) {
+          bestJaccard[segment] = result.getJaccardEstimate();
+          bestIdentity[segment] = result.getNucIdentity();
+        }
+      }
+
+      int count = 0;
+      double jaccardSum = 0;
+      double identitySum = 0;
+      for (int segment = 0; segment < segments; segment++) {
+        if (bestJaccard[segment] >= 0) {
+          count++;
+          jaccardSum += bestJaccard[segment];
+          identitySum += bestIdentity[segment];
+        }
+      }
+      this.segmentCount = count;
+      this.jaccard = jaccardSum / count;
+      this.identity = identitySum / count;
+      this.queryStart = firstOffset;
+      this.queryEnd = lastOffset + segmentLength;
+    }
+
+    ReadMapperResult toMapperResult() {
+      // median projected start, robust to a segment pulled away by a local repeat
+      long projectedStart = keys.get((from + to - 1) >>> 1)[2];
+      ReadMapperResult any = results.get((int) keys.get(from)[4]);
+      // on the reverse strand, the end of the query maps to the start of the interval
+      long start = any.isReverseStrand()
+          ? projectedStart + queryLength - queryEnd
+          : projectedStart + queryStart;
+      return new ReadMapperResult(any.getSequence(), any.getSequenceName(),
+          (int) Math.max(0, start), any.isReverseStrand(), jaccard, identity, -1, -1,
+          queryStart, queryEnd);
+    }
+  }
+}
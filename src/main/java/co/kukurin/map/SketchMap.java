@@ -1,69 +1,97 @@
 package co.kukurin.map;
 
-import co.kukurin.hash.Hash;
-import co.kukurin.hash.Minimizer.MinimizerValue;
-import java.util.Collection;
-import java.util.TreeMap;
+import co.kukurin.index.ReferenceIndex;
+import java.util.Arrays;
 
 /**
  * Class which is used to compute number of shared hashes between reference and query.
+ *
+ * <p>Hashes of the query and of a range of reference minimizers (the minimizers a candidate region
+ * can ever slide over) form the universe; each hash is identified by its rank within the sorted
+ * universe. Two Fenwick trees over ranks track which hashes are currently in {@code A U B_i} and
+ * which of those are shared, so that reference minimizers entering or leaving the window and
+ * counting shared hashes among the s smallest all take O(log n) time.
  */
 class SketchMap {
 
-  private static final int NOT_STORED = -1;
+  private static final int INITIAL_CAPACITY = 64;
+
+  private final long[] queryHashes;
+
+  private long[] universe = new long[INITIAL_CAPACITY];
+  private boolean[] inQuery = new boolean[INITIAL_CAPACITY];
+  private int[] referenceCounts = new int[INITIAL_CAPACITY + 1];
+  private int[] unionTree = new int[INITIAL_CAPACITY + 1];
+  private int[] sharedTree = new int[INITIAL_CAPACITY + 1];
+  private int universeSize;
+
+  private long[] rangeHashes = new long[INITIAL_CAPACITY];
+  private int[] rangeRanks = new int[INITIAL_CAPACITY];
+  private int rangeStart;
 
   /**
-   * Info about a hash (i.e. position within either query or reference.
+   * @param queryHashes sorted, distinct query hashes.
    */
-  static final class HashInfo {
+  SketchMap(long[] queryHashes) {
+    this.queryHashes = queryHashes;
+  }
 
-    int queryPosition;
-    int referencePosition;
+  /**
+   * Clears all references and prepares the map for reference minimizers within index range
+   * {@code [from, to)}.
+   */
+  void reset(ReferenceIndex reference, int from, int to) {
+    int rangeSize = to - from;
+    if (rangeHashes.length < rangeSize) {
+      rangeHashes = new long[rangeSize];
+      rangeRanks = new int[rangeSize];
+    }
 
-    private HashInfo(int queryPosition, int referencePosition) {
-      this.queryPosition = queryPosition;
-      this.referencePosition = referencePosition;
+    for (int i = 0; i < rangeSize; i++) {
+      rangeHashes[i] = reference.getMinimizerHash(from + i);
     }
+    rangeStart = from;
 
-  }
+    long[] sortedRange = Arrays.copyOf(rangeHashes, rangeSize);
+    Arrays.sort(sortedRange);
+    mergeUniverse(sortedRange);
 
-  private final TreeMap<Hash, HashInfo> map = new TreeMap<>();
+    for (int i = 0; i < rangeSize; i++) {
+      rangeRanks[i] = Arrays.binarySearch(universe, 0, universeSize, rangeHashes[i]) + 1;
+    }
 
-  SketchMap(Collection<MinimizerValue> queryHashes) {
-    queryHashes.forEach(hash -> map.put(
-        hash.getHash(),
-        new HashInfo(hash.getOriginalIndex(), NOT_STORED)));
+    // only query hashes are in the union initially
+    Arrays.fill(referenceCounts, 0, universeSize + 1, 0);
+    Arrays.fill(sharedTree, 0, universeSize + 1, 0);
+    Arrays.fill(unionTree, 0, universeSize + 1, 0);
+    for (int rank = 1; rank <= universeSize; rank++) {
+      unionTree[rank] += inQuery[rank - 1] ? 1 : 0;
+      int parent = rank + (rank & -rank);
+      if (parent <= universeSize) {
+        unionTree[parent] += unionTree[rank];
+      }
+    }
   }
 
   /**
-   * Records a reference in this map
+   * Records a reference minimizer (given by its index in the reference) in this map.
    */
-  void putReference(MinimizerValue minimizerValue) {
-    Hash referenceHash = minimizerValue.getHash();
-    int referencePosition = minimizerValue.getOriginalIndex();
-
-    HashInfo existing = map.get(referenceHash);
-    if (existing == null) {
-      map.put(referenceHash, new HashInfo(NOT_STORED, referencePosition));
-    } else {
-      existing.referencePosition = referencePosition;
+  void putReference(int minimizerIndex) {
+    int rank = rangeRanks[minimizerIndex - rangeStart];
+
+    if (referenceCounts[rank]++ == 0) {
+      add(inQuery[rank - 1] ? sharedTree : unionTree, rank, 1);
     }
   }
 
   /**
-   * Removes a reference record from this map
+   * Removes a reference minimizer (given by its index in the reference) from this map.
    */
-  void removeReference(MinimizerValue minimizerValue) {
-    Hash referenceHash = minimizerValue.getHash();
-    int referencePosition = minimizerValue.getOriginalIndex();
-
-    HashInfo existing = map.get(referenceHash);
-    if (existing != null && existing.referencePosition == referencePosition) {
-      if (existing.queryPosition == NOT_STORED) {
-        map.remove(referenceHash);
-      }
+  void removeReference(int minimizerIndex) {
+    int rank = rangeRanks[minimizerIndex - rangeStart];
 
-      existing.referencePosition = NOT_STORED;
+    if (--referenceCounts[rank] == 0) {
+      add(inQuery[rank - 1] ? sharedTree : unionTree, rank, -1);
     }
   }
 
@@ -71,8 +99,69 @@ class SketchMap {
    * Computes shared sketches (i.e. A U B_i intersected with A and B_i) recorded in this map.
    */
   int getSharedMinimizers(int sketchSize) {
-    return (int) map.values().stream().limit(sketchSize)
-        .filter(info -> info.queryPosition != NOT_STORED && info.referencePosition != NOT_STORED)
-        .count();
+    // query hashes are always in the union, so the s-th smallest element always exists
+    return prefixSum(sharedTree, findRankOfNth(unionTree, sketchSize));
+  }
+
+  private void mergeUniverse(long[] sortedRange) {
+    int capacity = queryHashes.length + sortedRange.length;
+    if (universe.length < capacity) {
+      universe = new long[capacity];
+      inQuery = new boolean[capacity];
+      referenceCounts = new int[capacity + 1];
+      unionTree = new int[capacity + 1];
+      sharedTree = new int[capacity + 1];
+    }
+
+    int q = 0;
+    int r = 0;
+    universeSize = 0;
+    while (q < queryHashes.length || r < sortedRange.length) {
+      if (r == sortedRange.length
+          || (q < queryHashes.length && queryHashes[q] <= sortedRange[r])) {
+        universe[universeSize] = queryHashes[q];
+        inQuery[universeSize] = true;
+        while (r < sortedRange.length && sortedRange[r] == queryHashes[q]) {
+          r++;
+        }
+        q++;
+      } else {
+        universe[universeSize] = sortedRange[r];
+        inQuery[universeSize] = false;
+        while (r + 1 < sortedRange.length && sortedRange[r + 1] == sortedRange[r]) {
+          r++;
+        }
+        r++;
+      }
+      universeSize++;
+    }
+  }
+
+  private void add(int[] tree, int rank, int delta) {
+    for (int i = rank; i <= universeSize; i += i & -i) {
+      tree[i] += delta;
+    }
+  }
+
+  private int prefixSum(int[] tree, int rank) {
+    int sum = 0;
+    for (int i = rank; i > 0; i -= i & -i) {
+      sum += tree[i];
+    }
+    return sum;
+  }
+
+  /**
+   * @return smallest rank whose prefix sum reaches n, or the largest rank if the total is lower.
+   */
+  private int findRankOfNth(int[] tree, int n) {
+    int rank = 0;
+    for (int step = Integer.highestOneBit(universeSize); step > 0; step >>= 1) {
+      if (rank + step <= universeSize && tree[rank + step] < n) {
+        rank += step;
+        n -= tree[rank];
+      }
+    }
+    return Math.min(rank + 1, universeSize);
   }
 }
@@ -0,0 +1,240 @@
+package co.kukurin.output;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Byte output formatted into reusable buffers and written to a channel by a background thread.
+ *
+ * <p>Text and numbers are encoded directly into the current buffer without intermediate strings.
+ * Once a buffer fills up it is handed to the flushing thread and formatting continues in a free
+ * one, so the producer only waits on I/O if all buffers are pending. Instances are not thread safe;
+ * an I/O error of the flushing thread is rethrown by the next call that switches buffers, or by
+ * {@link #close()}. Short-lived outputs can instead be {@link #synchronous written on the calling
+ * thread}.
+ */
+public class AsyncOutput implements Closeable {
+
+  public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+  private static final int BUFFERS = 3;
+  private static final ByteBuffer END = ByteBuffer.allocate(0);
+  private static final long[] POWERS_OF_TEN = {1, 10, 100, 1_000, 10_000, 100_000, 1_000_000};
+
+  private final WritableByteChannel channel;
+  private final BlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<>(BUFFERS);
+  private final BlockingQueue<ByteBuffer> full = new ArrayBlockingQueue<>(BUFFERS + 1);
+  private final Thread flusher;
+  private final byte[] digits = new byte[20];
+  private volatile IOException failure;
+  private ByteBuffer buffer;
+
+  public AsyncOutput(WritableByteChannel channel) {
+    this(channel, DEFAULT_BUFFER_SIZE);
+  }
+
+  public AsyncOutput(WritableByteChannel channel, int bufferSize) {
+    this.channel = channel;
+    for (int i = 0; i < BUFFERS - 1; i++) {
+      free.add(ByteBuffer.allocateDirect(bufferSize));
+    }
+    this.buffer = ByteBuffer.allocateDirect(bufferSize);
+    this.flusher = new Thread(this::flush, "output-flusher");
+    this.flusher.setDaemon(true);
+    this.flusher.start();
+  }
+
+  private AsyncOutput(WritableByteChannel channel, ByteBuffer buffer) {
+    this.channel = channel;
+    this.buffer = buffer;
+    this.flusher = null;
+  }
+
+  /**
+   * @return output formatting into a single heap buffer of given size and writing it to the
+   * channel on the calling thread whenever it fills up; for outputs too short-lived, such as
+   * server connections, to be worth a flushing thread and direct buffers of their own.
+   */
+  public static AsyncOutput synchronous(WritableByteChannel channel, int bufferSize) {
+    return new AsyncOutput(channel, ByteBuffer.allocate(bufferSize));
+  }
+
+  public AsyncOutput put(byte value) throws IOException {
+    if (!buffer.hasRemaining()) {
+      swap();
+    }
+    buffer.put(value);
+    return this;
+  }
+
+  public AsyncOutput put(byte[] values) throws IOException {
+    for (int offset = 0; offset < values.length; ) {
+      if (!buffer.hasRemaining()) {
+        swap();
+      }
+      int length = Math.min(buffer.remaining(), values.length - offset);
+      buffer.put(values, offset, length);
+      offset += length;
+    }
+    return this;
+  }
+
+  /**
+   * Writes given text up to its first whitespace character, in UTF-8.
+   */
+  public AsyncOutput putWord(String text) throws IOException {
+    int end = 0;
+    boolean ascii = true;
+    while (end < text.length() && !Character.isWhitespace(text.charAt(end))) {
+      ascii &= text.charAt(end) < 0x80;
+      end++;
+    }
+
+    if (!ascii) {
+      return put(text.substring(0, end).getBytes(StandardCharsets.UTF_8));
+    }
+
+    for (int i = 0; i < end; ) {
+      if (!buffer.hasRemaining()) {
+        swap();
+      }
+      for (int limit = Math.min(end, i + buffer.remaining()); i < limit; i++) {
+        buffer.put((byte) text.charAt(i));
+      }
+    }
+    return this;
+  }
+
+  public AsyncOutput putLong(long value) throws IOException {
+    if (value == Long.MIN_VALUE) {
+      return put(Long.toString(value).getBytes(StandardCharsets.US_ASCII));
+    }
+    if (value < 0) {
+      put((byte) '-');
+      value = -value;
+    }
+
+    int length = 0;
+    do {
+      digits[digits.length - ++length] = (byte) ('0' + value % 10);
+      value /= 10;
+    } while (value != 0);
+
+    if (buffer.remaining() >= length) {
+      buffer.put(digits, digits.length - length, length);
+    } else {
+      for (int i = digits.length - length; i < digits.length; i++) {
+        put(digits[i]);
+      }
+    }
+    return this;
+  }
+
+  /**
+   * Writes given value rounded to a fixed number of (at most 6) decimal places.
+   */
+  public AsyncOutput putFixed(double value, int decimals) throws IOException {
+    if (Double.isNaN(value) || Double.isInfinite(value)
+        || Math.abs(value) >= Long.MAX_VALUE / POWERS_OF_TEN[decimals]) {
+      return put(Double.toString(value).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    long scaled = Math.round(Math.abs(value) * POWERS_OF_TEN[decimals]);
+    if (value < 0 && scaled != 0) {
+      put((byte) '-');
+    }
+    putLong(scaled / POWERS_OF_TEN[decimals]);
+    if (decimals == 0) {
+      return this;
+    }
+
+    put((byte) '.');
+    long fraction = scaled % POWERS_OF_TEN[decimals];
+    for (int i = decimals - 1; i >= 0; i--) {
+      put((byte) ('0' + fraction / POWERS_OF_TEN[i] % 10));
+    }
+    return this;
+  }
+
+  /**
+   * Writes out all buffered output, waits for the flushing thread and closes the channel.
+   */
+  @Override
+  public void close() throws IOException {
+    if (flusher == null) {
+      try {
+        writeFully(buffer);
+      } finally {
+        channel.close();
+      }
+      return;
+    }
+
+    try {
+      full.put(buffer);
+      full.put(END);
+      flusher.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while flushing output");
+    } finally {
+      channel.close();
+    }
+
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  private void swap() throws IOException {
+    if (flusher == null) {
+      writeFully(buffer);
+      return;
+    }
+    if (failure != null) {
+      throw failure;
+    }
+
+    try {
+      full.put(buffer);
+      buffer = free.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for output buffer");
+    }
+  }
+
+  private void writeFully(ByteBuffer pending) throws IOException {
+    pending.flip();
+    while (pending.hasRemaining()) {
+      channel.write(pending);
+    }
+    pending.clear();
+  }
+
+  private void flush() {
+    try {
+      for (ByteBuffer pending = full.take(); pending != END; pending = full.take()) {
+        pending.flip();
+        try {
+          while (failure == null && pending.hasRemaining()) {
+            channel.write(pending);
+          }
+        } catch (IOException e) {
+          // keep recycling buffers, so the producer fails instead of blocking
+          failure = e;
+        }
+        pending.clear();
+        free.put(pending);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,52 @@
+package co.kukurin.output;
+
+import co.kukurin.fasta.SequenceRecord;
+import co.kukurin.map.ReadMapper.ReadMapperResult;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+/**
+ * Writes mappings in the original two line format:
+ *
+ * <pre>
+ * > [query header]
+ * sequence: [name] | position: [index] | strand: [+/-] | identity: [estimated identity]
+ * </pre>
+ *
+ * <p>with one sequence line per mapping, best first.
+ */
+public class LegacyWriter implements MappingWriter {
+
+  private final PrintStream out;
+
+  public LegacyWriter(OutputStream out) {
+    this.out = new PrintStream(out);
+  }
+
+  @Override
+  public void write(SequenceRecord query, List<ReadMapperResult> results) {
+    if (results.isEmpty()) {
+      return;
+    }
+
+    out.print("> ");
+    out.println(query.getHeader());
+    for (ReadMapperResult value : results) {
+      out.println(String.format("sequence: %s | position: %s | strand: %s | identity: %s",
+          value.getSequenceName(),
+          value.getIndex(),
+          value.isReverseStrand() ? '-' : '+',
+          value.getNucIdentity()));
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    out.close();
+    if (out.checkError()) {
+      throw new IOException("Failed writing mappings");
+    }
+  }
+}
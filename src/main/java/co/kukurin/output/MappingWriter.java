@@ -0,0 +1,11 @@
+package co.kukurin.output;
+
+import co.kukurin.pipeline.MappingPipeline.ResultWriter;
+import java.io.Closeable;
+
+/**
+ * Writer of mapping results to an output file.
+ */
+public interface MappingWriter extends ResultWriter, Closeable {
+
+}
@@ -0,0 +1,99 @@
+package co.kukurin.output;
+
+import co.kukurin.fasta.SequenceRecord;
+import co.kukurin.index.ReferenceSequences;
+import co.kukurin.map.ReadMapper.ReadMapperResult;
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Writes mappings in PAF, one line per mapped query:
+ *
+ * <pre>
+ * query name, length, start, end, strand, target name, length, start, end,
+ * matching bases, block length, mapping quality, tp:A:[P or S], id:f:[estimated identity],
+ * NM:i:[edit distance, verified mappings only]
+ * </pre>
+ *
+ * <p>Estimated mappings are approximate, so the query interval they cover, the whole query unless
+ * chained from segments, is reported as mapped to a target interval of the same length, and the
+ * number of matching bases is estimated from the identity.
+ * Verified mappings report the aligned target interval, and block length less edit distance as
+ * matching bases. Mapping quality is not estimated and reported as missing (255). The best mapping
+ * of a query is marked primary ({@code tp:A:P}), alternative mappings secondary. Unmapped queries
+ * are not written.
+ */
+public class PafWriter implements MappingWriter {
+
+  private static final int MISSING_MAPPING_QUALITY = 255;
+  private static final int IDENTITY_DECIMALS = 4;
+  private static final byte[] PRIMARY_TAG = "tp:A:P".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] SECONDARY_TAG = "tp:A:S".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] IDENTITY_TAG = "id:f:".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] EDIT_DISTANCE_TAG = "NM:i:".getBytes(StandardCharsets.US_ASCII);
+
+  private final ReferenceSequences sequences;
+  private final byte[][] targetNames;
+  private final AsyncOutput out;
+
+  public PafWriter(ReferenceSequences sequences, WritableByteChannel channel) {
+    this(sequences, new AsyncOutput(channel));
+  }
+
+  public PafWriter(ReferenceSequences sequences, AsyncOutput out) {
+    this.sequences = sequences;
+    this.targetNames = new byte[sequences.size()][];
+    this.out = out;
+  }
+
+  @Override
+  public void write(SequenceRecord query, List<ReadMapperResult> results) throws IOException {
+    for (int i = 0; i < results.size(); i++) {
+      write(query, results.get(i), i == 0);
+    }
+  }
+
+  private void write(SequenceRecord query, ReadMapperResult mapping, boolean primary)
+      throws IOException {
+    int target = mapping.getSequence();
+    int targetLength = sequences.getLength(target);
+    int targetStart = mapping.getIndex();
+    int targetEnd = Math.min(targetLength, mapping.targetEnd(query.getLength()));
+    int queryStart = mapping.getQueryStart();
+    int queryEnd = mapping.queryEnd(query.getLength());
+    int blockLength = Math.max(queryEnd - queryStart, targetEnd - targetStart);
+
+    out.putWord(query.getHeader()).put((byte) '\t')
+        .putLong(query.getLength()).put((byte) '\t')
+        .putLong(queryStart).put((byte) '\t')
+        .putLong(queryEnd).put((byte) '\t')
+        .put((byte) (mapping.isReverseStrand() ? '-' : '+')).put((byte) '\t')
+        .put(targetName(target)).put((byte) '\t')
+        .putLong(targetLength).put((byte) '\t')
+        .putLong(targetStart).put((byte) '\t')
+        .putLong(targetEnd).put((byte) '\t')
+        .putLong(Math.round(mapping.getNucIdentity() * blockLength)).put((byte) '\t')
+        .putLong(blockLength).put((byte) '\t')
+        .putLong(MISSING_MAPPING_QUALITY).put((byte) '\t')
+        .put(primary ? PRIMARY_TAG : SECONDARY_TAG).put((byte) '\t')
+        .put(IDENTITY_TAG).putFixed(mapping.getNucIdentity(), IDENTITY_DECIMALS);
+    if (mapping.isVerified()) {
+      out.put((byte) '\t').put(EDIT_DISTANCE_TAG).putLong(mapping.getEditDistance());
+    }
+    out.put((byte) '\n');
+  }
+
+  @Override
+  public void close() throws IOException {
+    out.close();
+  }
+
+  private byte[] targetName(int sequence) {
+    if (targetNames[sequence] == null) {
+      targetNames[sequence] = sequences.getName(sequence).getBytes(StandardCharsets.UTF_8);
+    }
+    return targetNames[sequence];
+  }
+}
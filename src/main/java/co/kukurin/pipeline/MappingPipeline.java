@@ -0,0 +1,202 @@
+package co.kukurin.pipeline;
+
+import co.kukurin.benchmark.PipelineMetrics;
+import co.kukurin.benchmark.PipelineMetrics.Stage;
+import co.kukurin.fasta.RecordSource;
+import co.kukurin.fasta.SequenceRecord;
+import co.kukurin.map.QueryMapper;
+import co.kukurin.map.ReadMapper.ReadMapperResult;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Staged mapping pipeline: read -> (minimize + map) -> write.
+ *
+ * <p>A reader thread groups query records into batches and submits each batch to a pool of worker
+ * threads. Pending batches are queued in input order in a bounded queue, which the calling thread
+ * drains as the writer stage; results are therefore written in input order, and the reader blocks
+ * once the writer falls {@code queueCapacity} batches behind.
+ */
+public class MappingPipeline {
+
+  /**
+   * Consumer of mapping results, always invoked from a single thread in input order.
+   */
+  public interface ResultWriter {
+
+    /**
+     * @param results Mappings of the query, best first; empty if it is unmapped.
+     */
+    void write(SequenceRecord query, List<ReadMapperResult> results) throws IOException;
+  }
+
+  private static final int MAX_BATCH_RECORDS = 256;
+  private static final int MAX_BATCH_BASES = 1 << 20;
+
+  private static final class Batch {
+
+    final List<SequenceRecord> records = new ArrayList<>();
+    final List<List<ReadMapperResult>> results = new ArrayList<>();
+    final boolean last;
+
+    Batch(boolean last) {
+      this.last = last;
+    }
+  }
+
+  private final int threads;
+  private final ExecutorService sharedWorkers;
+  private final int queueCapacity;
+  private final PipelineMetrics metrics;
+
+  public MappingPipeline(int threads) {
+    this(threads, new PipelineMetrics());
+  }
+
+  public MappingPipeline(int threads, PipelineMetrics metrics) {
+    this(threads, 4 * threads, metrics);
+  }
+
+  public MappingPipeline(int threads, int queueCapacity, PipelineMetrics metrics) {
+    this.threads = threads;
+    this.sharedWorkers = null;
+    this.queueCapacity = queueCapacity;
+    this.metrics = metrics;
+  }
+
+  /**
+   * Pipeline mapping on a pool shared with other pipelines, e.g. created by {@link
+   * #newWorkerPool(int)}. The pool is not shut down when a run completes.
+   */
+  public MappingPipeline(
+      ExecutorService sharedWorkers, int queueCapacity, PipelineMetrics metrics) {
+    this.threads = 0;
+    this.sharedWorkers = sharedWorkers;
+    this.queueCapacity = queueCapacity;
+    this.metrics = metrics;
+  }
+
+  /**
+   * @return pool of daemon worker threads.
+   */
+  public static ExecutorService newWorkerPool(int threads) {
+    return Executors.newFixedThreadPool(threads, daemonThreads("mapper-worker"));
+  }
+
+  /**
+   * Maps all records from a source, blocking until every result has been written.
+   */
+  public void run(RecordSource source, QueryMapper queryMapper, ResultWriter writer)
+      throws Exception {
+    BlockingQueue<CompletableFuture<Batch>> pending = new ArrayBlockingQueue<>(queueCapacity);
+    ExecutorService workers = sharedWorkers != null ? sharedWorkers : newWorkerPool(threads);
+    Thread reader = daemonThreads("mapper-reader").newThread(() -> {
+      try {
+        read(source, queryMapper, workers, pending);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+
+    try {
+      reader.start();
+
+      for (Batch batch = take(pending); !batch.last; batch = take(pending)) {
+        for (int i = 0; i < batch.records.size(); i++) {
+          writer.write(batch.records.get(i), batch.results.get(i));
+        }
+      }
+    } finally {
+      reader.interrupt();
+      if (sharedWorkers == null) {
+        workers.shutdownNow();
+      }
+    }
+  }
+
+  private void read(
+      RecordSource source,
+      QueryMapper queryMapper,
+      ExecutorService workers,
+      BlockingQueue<CompletableFuture<Batch>> pending) throws InterruptedException {
+    try {
+      Batch batch = new Batch(false);
+      long batchBases = 0;
+
+      for (Optional<SequenceRecord> record = nextRecord(source);
+          record.isPresent();
+          record = nextRecord(source)) {
+        batch.records.add(record.get());
+        batchBases += record.get().getLength();
+
+        if (batch.records.size() >= MAX_BATCH_RECORDS || batchBases >= MAX_BATCH_BASES) {
+          pending.put(submit(batch, queryMapper, workers));
+          batch = new Batch(false);
+          batchBases = 0;
+        }
+      }
+
+      if (!batch.records.isEmpty()) {
+        pending.put(submit(batch, queryMapper, workers));
+      }
+      pending.put(CompletableFuture.completedFuture(new Batch(true)));
+    } catch (IOException | RuntimeException e) {
+      CompletableFuture<Batch> failed = new CompletableFuture<>();
+      failed.completeExceptionally(e);
+      pending.put(failed);
+    }
+  }
+
+  private Optional<SequenceRecord> nextRecord(RecordSource source) throws IOException {
+    long start = System.nanoTime();
+    Optional<SequenceRecord> record = source.nextRecord();
+    if (record.isPresent()) {
+      metrics.recordStage(Stage.PARSE, System.nanoTime() - start);
+      metrics.recordRead(record.get().getLength());
+    }
+    return record;
+  }
+
+  private static CompletableFuture<Batch> submit(
+      Batch batch, QueryMapper queryMapper, ExecutorService workers) {
+    return CompletableFuture.supplyAsync(() -> {
+      try {
+        for (SequenceRecord record : batch.records) {
+          batch.results.add(queryMapper.mapAll(record));
+        }
+        return batch;
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }, workers);
+  }
+
+  private static Batch take(BlockingQueue<CompletableFuture<Batch>> pending) throws Exception {
+    try {
+      return pending.take().get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      throw cause instanceof Exception ? (Exception) cause : e;
+    }
+  }
+
+  private static ThreadFactory daemonThreads(String prefix) {
+    AtomicInteger counter = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+}
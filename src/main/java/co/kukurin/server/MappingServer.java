@@ -0,0 +1,144 @@
+package co.kukurin.server;
+
+import co.kukurin.benchmark.PipelineMetrics;
+import co.kukurin.fasta.RecordSource;
+import co.kukurin.fasta.SequenceFiles;
+import co.kukurin.index.ReferenceSequences;
+import co.kukurin.map.QueryMapper;
+import co.kukurin.output.AsyncOutput;
+import co.kukurin.output.PafWriter;
+import co.kukurin.pipeline.MappingPipeline;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Maps query batches received over TCP against a resident reference index.
+ *
+ * <p>Each connection carries one batch: the client sends FASTA or FASTQ records and shuts down its
+ * output, and the server streams back PAF mappings in input order before closing the connection.
+ * Connections are handled concurrently, each by its own {@link MappingPipeline}; all pipelines map
+ * on one shared pool of worker threads. Mappings are written on the thread handling the connection,
+ * so a connection costs no threads or direct buffers beyond those of the shared pools.
+ */
+public class MappingServer implements Closeable {
+
+  private static final Logger logger = Logger.getLogger("MappingServer");
+  private static final int CONNECTION_BUFFER_SIZE = 1 << 16;
+
+  private final QueryMapper queryMapper;
+  private final ReferenceSequences sequences;
+  private final ExecutorService workers;
+  private final ExecutorService connections;
+  private final int queueCapacity;
+  private final PipelineMetrics metrics;
+  private volatile ServerSocketChannel serverChannel;
+
+  /**
+   * @param threads number of threads mapping queries of all connections.
+   * @param maxConnections number of connections served at the same time; further connections wait
+   * until one completes.
+   */
+  public MappingServer(QueryMapper queryMapper, ReferenceSequences sequences, int threads,
+      int maxConnections, PipelineMetrics metrics) {
+    this.queryMapper = queryMapper;
+    this.sequences = sequences;
+    this.workers = MappingPipeline.newWorkerPool(threads);
+    this.connections = Executors.newFixedThreadPool(maxConnections, daemonThreads());
+    this.queueCapacity = 4 * threads;
+    this.metrics = metrics;
+  }
+
+  /**
+   * Accepts connections on a bound channel until {@link #close()} is called.
+   */
+  public void serve(ServerSocketChannel serverChannel) throws IOException {
+    this.serverChannel = serverChannel;
+    try {
+      while (true) {
+        SocketChannel client = serverChannel.accept();
+        connections.execute(() -> handle(client));
+      }
+    } catch (AsynchronousCloseException e) {
+      logger.info("Server stopped");
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (serverChannel != null) {
+      serverChannel.close();
+    }
+    connections.shutdownNow();
+    workers.shutdownNow();
+  }
+
+  private void handle(SocketChannel client) {
+    long startTime = System.nanoTime();
+    AtomicInteger reads = new AtomicInteger();
+    // the writer closes the connection, so it is opened first to close it on any failure
+    try (PafWriter writer =
+        new PafWriter(sequences, AsyncOutput.synchronous(client, CONNECTION_BUFFER_SIZE));
+        RecordSource source = SequenceFiles.openRecords(new SocketInput(client))) {
+      new MappingPipeline(workers, queueCapacity, metrics).run(source, queryMapper,
+          (query, results) -> {
+            reads.incrementAndGet();
+            writer.write(query, results);
+          });
+      logger.fine(String.format("Mapped %d reads for %s in %.1f ms",
+          reads.get(),
+          client.getRemoteAddress(),
+          (System.nanoTime() - startTime) / 1e6));
+    } catch (Exception e) {
+      logger.log(Level.WARNING, "Failed mapping batch from client", e);
+    }
+  }
+
+  private static ThreadFactory daemonThreads() {
+    AtomicInteger counter = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, "mapping-connection-" + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  /**
+   * Input side of a connection; closing it leaves the output side open for the results.
+   */
+  private static class SocketInput implements ReadableByteChannel {
+
+    private final SocketChannel channel;
+
+    SocketInput(SocketChannel channel) {
+      this.channel = channel;
+    }
+
+    @Override
+    public int read(ByteBuffer destination) throws IOException {
+      return channel.read(destination);
+    }
+
+    @Override
+    public boolean isOpen() {
+      return channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (channel.isOpen()) {
+        channel.shutdownInput();
+      }
+    }
+  }
+}
@@ -8,12 +8,16 @@ import co.kukurin.map.ReadMapper.ReadMapperResult;
 public class StatUtils {
 
   private static final double DELTA = 0.015;
+  private static final int ALPHABET_SIZE = 4;
 
   /**
    * Constructs a {@link co.kukurin.map.ReadMapper} result from given values.
    */
-  public static ReadMapperResult toMapperResult(int index, double jaccard, int kmerSize) {
-    return new ReadMapperResult(index, jaccard, 1 - jaccardToMash(jaccard, kmerSize));
+  public static ReadMapperResult toMapperResult(
+      int sequence, String sequenceName, int index, boolean reverseStrand, double jaccard,
+      int kmerSize) {
+    return new ReadMapperResult(sequence, sequenceName, index, reverseStrand, jaccard,
+        1 - jaccardToMash(jaccard, kmerSize));
   }
 
   /**
@@ -45,4 +49,59 @@ public class StatUtils {
     return 1.0 / (2.0 * Math.exp(kmerSize * epsilon) - 1.0);
   }
 
+  /**
+   * MashMap's p-value of a query mapping: the expected number of reference positions at which a
+   * random window as long as the query shares at least {@code ceil(s * J)} of the query's {@code s}
+   * sketch elements, where {@code J} is the Jaccard similarity at given error rate.
+   */
+  public static double mappingPValue(int sketchSize, int kmerSize, double epsilon,
+      int queryLength, long referenceLength) {
+    // probability that a k-mer occurs in a random sequence as long as the query
+    double occurrence = 1 / (1 + Math.pow(ALPHABET_SIZE, kmerSize) / queryLength);
+    // Jaccard similarity of two such sequences
+    double shared = occurrence * occurrence / (2 * occurrence - occurrence * occurrence);
+    int minShared = (int) Math.ceil(sketchSize * mashToJaccard(epsilon, kmerSize));
+
+    return referenceLength * binomialTail(minShared, sketchSize, shared);
+  }
+
+  /**
+   * Derives the window size from the smallest sketch size whose {@link #mappingPValue mapping
+   * p-value} is at most given cutoff for queries of given length, as MashMap does: a window of
+   * {@code w} keeps about {@code 2L / w} minimizers of a query of length {@code L}.
+   */
+  public static int recommendedWindowSize(double pValueCutoff, int kmerSize, double epsilon,
+      int queryLength, long referenceLength) {
+    for (int sketchSize = 1; sketchSize < queryLength; sketchSize++) {
+      if (mappingPValue(sketchSize, kmerSize, epsilon, queryLength, referenceLength)
+          <= pValueCutoff) {
+        return Math.max(1, Math.min(queryLength, (int) (2.0 * queryLength / sketchSize)));
+      }
+    }
+    return 1;
+  }
+
+  /**
+   * @return probability of at least {@code x} successes in {@code n} trials with success
+   * probability {@code p}.
+   */
+  static double binomialTail(int x, int n, double p) {
+    if (x <= 0) {
+      return 1;
+    }
+
+    double logP = Math.log(p);
+    double logQ = Math.log1p(-p);
+    double logTerm = x * logP + (n - x) * logQ;
+    for (int i = 1; i <= x; i++) {
+      logTerm += Math.log((double) (n - x + i) / i);
+    }
+
+    double tail = 0;
+    for (int i = x; i <= n; i++) {
+      tail += Math.exp(logTerm);
+      logTerm += Math.log((double) (n - i) / (i + 1)) + logP - logQ;
+    }
+    return Math.min(1, tail);
+  }
 }
@@ -0,0 +1,155 @@
+package co.kukurin;
+
+import static co.kukurin.TestSequences.DENSE_PARAMETERS;
+import static co.kukurin.TestSequences.indexOf;
+import static co.kukurin.TestSequences.randomBases;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import co.kukurin.ParameterSupplier.ConstantParameters;
+import co.kukurin.align.Alignment;
+import co.kukurin.align.MyersAligner;
+import co.kukurin.benchmark.PipelineMetrics;
+import co.kukurin.fasta.SequenceRecord;
+import co.kukurin.index.PackedSequence;
+import co.kukurin.index.ReferenceIndex;
+import co.kukurin.map.MappingOptions;
+import co.kukurin.map.QueryMapper;
+import co.kukurin.map.ReadMapper.ReadMapperResult;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+public class AlignmentTest {
+
+  @Test
+  public void myersAligner_queriesWithEdits_shouldMatchDynamicProgramming() throws Exception {
+    // given
+    Random random = new Random(5);
+    byte[] reference = randomBases(random, 2000);
+    PackedSequence packed = PackedSequence.builder().add(reference, 0, reference.length).build();
+    int[] queryLengths = {1, 63, 64, 65, 200, 700};
+    List<byte[]> queries = new ArrayList<>();
+    int[] origins = new int[queryLengths.length];
+    for (int i = 0; i < queryLengths.length; i++) {
+      origins[i] = 200 + random.nextInt(1000);
+      queries.add(codes(mutate(random, reference, origins[i], queryLengths[i])));
+    }
+
+    // when
+    MyersAligner aligner = new MyersAligner();
+    List<Alignment> alignments = new ArrayList<>();
+    for (int i = 0; i < queries.size(); i++) {
+      byte[] query = queries.get(i);
+      alignments.add(aligner.align(query, query.length, packed,
+          origins[i] - 100, origins[i] + queryLengths[i] + 100));
+    }
+
+    // then
+    byte[] referenceCodes = codes(reference);
+    for (int i = 0; i < queries.size(); i++) {
+      byte[] query = queries.get(i);
+      Alignment alignment = alignments.get(i);
+      assertEquals(distance(query, referenceCodes, origins[i] - 100,
+          origins[i] + queryLengths[i] + 100, true), alignment.getEditDistance());
+      assertEquals(alignment.getEditDistance(), distance(query, referenceCodes,
+          alignment.getStart(), alignment.getEnd(), false));
+    }
+  }
+
+  @Test
+  public void queryMapper_verifiedMappings_shouldReportAlignedInterval() throws Exception {
+    // given
+    Random random = new Random(17);
+    byte[] reference = randomBases(random, 20000);
+
+    // reverse complement of [5000, 7000) without [6000, 6010) and with 3 substitutions
+    ByteArrayOutputStream query = new ByteArrayOutputStream();
+    for (int i = 6999; i >= 5000; i--) {
+      if (i < 6000 || i >= 6010) {
+        query.write("TGCA".charAt(PackedSequence.code(reference[i])));
+      }
+    }
+    byte[] queryBases = query.toByteArray();
+    for (int i : new int[] {100, 700, 1500}) {
+      queryBases[i] = (byte) (queryBases[i] == 'A' ? 'C' : 'A');
+    }
+
+    ConstantParameters parameters = DENSE_PARAMETERS;
+    ReferenceIndex referenceIndex = indexOf(reference, parameters)
+        .withBases(PackedSequence.builder().add(reference, 0, reference.length).build());
+
+    // when
+    ReadMapperResult result = new QueryMapper(referenceIndex, parameters, new PipelineMetrics(),
+        MappingOptions.defaults().withVerifiedMappings(1))
+        .mapAll(new SequenceRecord("query", queryBases, queryBases.length))
+        .get(0);
+
+    // then
+    assertTrue(result.isVerified());
+    assertTrue(result.isReverseStrand());
+    assertEquals(5000, result.getIndex());
+    assertEquals(7000, result.getAlignmentEnd());
+    assertEquals(13, result.getEditDistance());
+    assertEquals(1 - 13 / 2000.0, result.getNucIdentity(), 1e-9);
+  }
+
+  /**
+   * @return copy of {@code length} bases from given origin with 10% substitutions and indels.
+   */
+  private static byte[] mutate(Random random, byte[] bases, int origin, int length) {
+    ByteArrayOutputStream mutated = new ByteArrayOutputStream();
+    for (int i = origin; i < origin + length; i++) {
+      int edit = random.nextInt(30);
+      if (edit == 0) {
+        mutated.write("ACGT".charAt(random.nextInt(4)));
+      } else if (edit == 1) {
+        mutated.write(bases[i]);
+        mutated.write("ACGT".charAt(random.nextInt(4)));
+      } else if (edit != 2 || i == origin) {
+        mutated.write(bases[i]);
+      }
+    }
+    return mutated.toByteArray();
+  }
+
+  private static byte[] codes(byte[] bases) {
+    byte[] codes = new byte[bases.length];
+    for (int i = 0; i < bases.length; i++) {
+      codes[i] = PackedSequence.code(bases[i]);
+    }
+    return codes;
+  }
+
+  /**
+   * Edit distance of the query to reference {@code [from, to)} by dynamic programming; with
+   * {@code semiGlobal}, the alignment may start and end anywhere within the reference.
+   */
+  private static int distance(byte[] query, byte[] reference, int from, int to,
+      boolean semiGlobal) {
+    int[] previous = new int[to - from + 1];
+    int[] current = new int[to - from + 1];
+    for (int j = 0; j < previous.length; j++) {
+      previous[j] = semiGlobal ? 0 : j;
+    }
+
+    for (int i = 1; i <= query.length; i++) {
+      current[0] = i;
+      for (int j = 1; j < current.length; j++) {
+        int substitution = previous[j - 1] + (query[i - 1] == reference[from + j - 1] ? 0 : 1);
+        current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+      }
+      int[] swap = previous;
+      previous = current;
+      current = swap;
+    }
+
+    int distance = previous[previous.length - 1];
+    for (int j = 0; semiGlobal && j < previous.length; j++) {
+      distance = Math.min(distance, previous[j]);
+    }
+    return distance;
+  }
+}
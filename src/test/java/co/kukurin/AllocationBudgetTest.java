@@ -0,0 +1,155 @@
+package co.kukurin;
+
+import static co.kukurin.TestSequences.indexOf;
+import static co.kukurin.TestSequences.randomBases;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import co.kukurin.ParameterSupplier.ConstantParameters;
+import co.kukurin.fasta.RecordSource;
+import co.kukurin.fasta.SequenceFiles;
+import co.kukurin.fasta.SequenceRecord;
+import co.kukurin.map.QueryMapper;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Guards the bytes the hot path allocates, which turn into GC pauses and tail latency. Reads of a
+ * fixed simulated dataset are parsed and mapped on the test thread, after warm-up passes, and the
+ * bytes the thread allocated meanwhile are compared to budgets. Budgets default to about twice
+ * what the hot path allocates today and can be set with system properties, e.g. {@code mvn test
+ * -Dallocation.mapBytesPerRead=20000}.
+ */
+public class AllocationBudgetTest {
+
+  private static final int REFERENCE_LENGTH = 500_000;
+  private static final int READS = 200;
+  private static final int READ_LENGTH = 3000;
+  private static final int WARMUP_PASSES = 2;
+
+  private static com.sun.management.ThreadMXBean threads;
+  private static byte[] reference;
+  private static byte[] queries;
+
+  @BeforeClass
+  public static void setUp() {
+    if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+      threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    }
+
+    // reads with about 1.7% each of substitutions, insertions and deletions
+    Random random = new Random(25);
+    reference = randomBases(random, REFERENCE_LENGTH);
+    ByteArrayOutputStream fasta = new ByteArrayOutputStream();
+    for (int read = 0; read < READS; read++) {
+      int origin = random.nextInt(REFERENCE_LENGTH - READ_LENGTH);
+      byte[] header = (">read_" + read + "\n").getBytes(StandardCharsets.US_ASCII);
+      fasta.write(header, 0, header.length);
+      for (int i = origin; i < origin + READ_LENGTH; i++) {
+        int edit = random.nextInt(60);
+        if (edit != 0) {
+          fasta.write(edit == 1 ? "ACGT".charAt(random.nextInt(4)) : reference[i]);
+        }
+        if (edit == 2) {
+          fasta.write("ACGT".charAt(random.nextInt(4)));
+        }
+      }
+      fasta.write('\n');
+    }
+    queries = fasta.toByteArray();
+  }
+
+  @Test
+  public void allocation_parsingReads_shouldStayWithinBudget() throws Exception {
+    // given
+    assumeTrue(threads != null && threads.isThreadAllocatedMemorySupported());
+    threads.setThreadAllocatedMemoryEnabled(true);
+    List<SequenceRecord> records = new ArrayList<>();
+    for (int pass = 0; pass < WARMUP_PASSES; pass++) {
+      records = parse();
+    }
+
+    // when
+    long before = allocatedBytes();
+    records = parse();
+    long allocated = allocatedBytes() - before;
+
+    // then
+    assertEquals(READS, records.size());
+    assertWithinBudget("allocation.parseBytesPerBase", 3, allocated, bases(records), "base");
+  }
+
+  @Test
+  public void allocation_mappingReads_shouldStayWithinBudget() throws Exception {
+    // given
+    assumeTrue(threads != null && threads.isThreadAllocatedMemorySupported());
+    threads.setThreadAllocatedMemoryEnabled(true);
+    ConstantParameters parameters = Main.getParameters(16, 90, 0.15);
+    QueryMapper queryMapper = new QueryMapper(indexOf(reference, parameters), parameters);
+    List<SequenceRecord> records = parse();
+    for (int pass = 0; pass < WARMUP_PASSES; pass++) {
+      map(queryMapper, records);
+    }
+
+    // when
+    long before = allocatedBytes();
+    int mapped = map(queryMapper, records);
+    long allocated = allocatedBytes() - before;
+
+    // then
+    assertEquals(READS, mapped);
+    assertWithinBudget("allocation.mapBytesPerBase", 10, allocated, bases(records), "base");
+    assertWithinBudget("allocation.mapBytesPerRead", 32 * 1024, allocated, READS, "read");
+  }
+
+  private static List<SequenceRecord> parse() throws Exception {
+    List<SequenceRecord> records = new ArrayList<>(READS);
+    try (RecordSource source = SequenceFiles.openRecords(
+        Channels.newChannel(new ByteArrayInputStream(queries)))) {
+      for (Optional<SequenceRecord> record = source.nextRecord();
+          record.isPresent();
+          record = source.nextRecord()) {
+        records.add(record.get());
+      }
+    }
+    return records;
+  }
+
+  private static int map(QueryMapper queryMapper, List<SequenceRecord> records) throws Exception {
+    int mapped = 0;
+    for (SequenceRecord record : records) {
+      mapped += queryMapper.map(record).isPresent() ? 1 : 0;
+    }
+    return mapped;
+  }
+
+  private static long bases(List<SequenceRecord> records) {
+    return records.stream().mapToLong(SequenceRecord::getLength).sum();
+  }
+
+  private static long allocatedBytes() {
+    return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  /**
+   * Fails if allocated bytes per unit exceed the budget set by given system property.
+   */
+  private static void assertWithinBudget(String property, double defaultBudget, long allocated,
+      long units, String unit) {
+    String value = System.getProperty(property);
+    double budget = value == null ? defaultBudget : Double.parseDouble(value);
+    double perUnit = (double) allocated / units;
+    assertTrue(String.format("Allocated %.1f bytes per %s, over the budget of %s set by -D%s",
+        perUnit, unit, budget, property), perUnit <= budget);
+  }
+}
@@ -0,0 +1,63 @@
+package co.kukurin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import co.kukurin.evaluate.AccuracyStats;
+import co.kukurin.evaluate.PredictedMapping;
+import co.kukurin.evaluate.WgsimTruth;
+import java.util.Optional;
+import org.junit.Test;
+
+public class EvaluationTest {
+
+  @Test
+  public void wgsimTruth_sequenceNameWithUnderscores_shouldParseFromTheRight() {
+    // when
+    WgsimTruth truth = WgsimTruth.parse("chr_1_a_1001_2000_40:5:5_30:0:0_7/1").get();
+
+    // then
+    assertEquals("chr_1_a", truth.getSequenceName());
+    assertEquals(1000, truth.getStart());
+    assertEquals(2000, truth.getEnd());
+    assertEquals(0.95, truth.identity(1000), 1e-9);
+    assertFalse(WgsimTruth.parse("read_1").isPresent());
+  }
+
+  @Test
+  public void accuracyStats_shouldScoreMappingsByOverlap() {
+    // given
+    WgsimTruth truth = WgsimTruth.parse("I_1001_2000_50:0:0_0:0:0_0/1").get();
+    AccuracyStats stats = new AccuracyStats(0.5);
+
+    // when
+    stats.add(truth, 1000, Optional.of(new PredictedMapping("I", 1300, 2300, false, 0.96)));
+    stats.add(truth, 1000, Optional.of(new PredictedMapping("I", 1600, 2600, false, 0.96)));
+    stats.add(truth, 1000, Optional.of(new PredictedMapping("II", 1000, 2000, false, 0.96)));
+    stats.add(truth, 1000, Optional.empty());
+
+    // then
+    assertEquals(4, stats.getReads());
+    assertEquals(3, stats.getMapped());
+    assertEquals(1, stats.getCorrect());
+    assertEquals(1.0 / 3, stats.precision(), 1e-9);
+    assertEquals(0.25, stats.recall(), 1e-9);
+    assertEquals(0.01, stats.meanIdentityError(), 1e-9);
+  }
+
+  @Test
+  public void accuracyStats_noMappings_shouldLeaveRatiosUndefined() {
+    // given
+    WgsimTruth truth = WgsimTruth.parse("I_1001_2000_50:0:0_0:0:0_0/1").get();
+    AccuracyStats stats = new AccuracyStats(0.5);
+
+    // when
+    stats.add(truth, 1000, Optional.empty());
+
+    // then
+    assertTrue(Double.isNaN(stats.precision()));
+    assertEquals(0, stats.recall(), 1e-9);
+    assertTrue(Double.isNaN(stats.meanIdentityError()));
+  }
+}
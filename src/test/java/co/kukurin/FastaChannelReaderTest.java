@@ -0,0 +1,94 @@
+package co.kukurin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import co.kukurin.fasta.FastaChannelReader;
+import co.kukurin.fasta.FastaChannelReader.RecordKmers;
+import co.kukurin.fasta.SequenceRecord;
+import java.io.ByteArrayInputStream;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import org.junit.Test;
+
+public class FastaChannelReaderTest {
+
+  @Test
+  public void readRecords_withCommentsAndLineBreaks_shouldReadBasesOnly() throws Exception {
+    // given
+    String fasta = ";file comment\n"
+        + ">first sequence with a rather long description\r\n"
+        + ";record comment\n"
+        + "ACGTA\r\n"
+        + "\n"
+        + "CCGG\n"
+        + ">second\n"
+        + "TT\n"
+        + ";trailing comment\n"
+        + "GG";
+    // buffer smaller than the header, so lines span multiple reads from the channel
+    FastaChannelReader reader = reader(fasta, 8);
+
+    // when
+    List<SequenceRecord> records = new ArrayList<>();
+    for (Optional<SequenceRecord> record = reader.nextRecord();
+        record.isPresent();
+        record = reader.nextRecord()) {
+      records.add(record.get());
+    }
+
+    // then
+    assertEquals(2, records.size());
+    assertEquals("first sequence with a rather long description", records.get(0).getHeader());
+    assertEquals("ACGTACCGG", bases(records.get(0)));
+    assertEquals("second", records.get(1).getName());
+    assertEquals("TTGG", bases(records.get(1)));
+  }
+
+  @Test
+  public void nextHeader_unreadBases_shouldBeSkipped() throws Exception {
+    // given
+    FastaChannelReader reader = reader(">a\nACGT\nACGT\n>b\nTTTT\n", 4);
+
+    // when
+    String first = reader.nextHeader().get();
+    String second = reader.nextHeader().get();
+    SequenceRecord last = reader.nextRecord().orElse(null);
+
+    // then
+    assertEquals("a", first);
+    assertEquals("b", second);
+    assertEquals(null, last);
+    assertFalse(reader.nextHeader().isPresent());
+  }
+
+  @Test
+  public void kmers_multiLineRecord_shouldCountAllBases() throws Exception {
+    // given
+    FastaChannelReader reader = reader(">header\nACGTA\nCGTAC\nG\n>next\nA\n", 16);
+    reader.nextHeader();
+
+    // when
+    RecordKmers kmers = reader.kmers(4);
+    int kmerCount = 0;
+    while (kmers.nextKmer()) {
+      kmerCount++;
+    }
+
+    // then
+    assertEquals(11, kmers.getLength());
+    assertEquals(8, kmerCount);
+    assertEquals("next", reader.nextHeader().get());
+  }
+
+  private static FastaChannelReader reader(String contents, int bufferSize) {
+    return new FastaChannelReader(
+        Channels.newChannel(new ByteArrayInputStream(contents.getBytes())), bufferSize);
+  }
+
+  private static String bases(SequenceRecord record) {
+    return new String(record.getBases(), 0, record.getLength());
+  }
+}
@@ -1,48 +1,82 @@
 package co.kukurin;
 
-import static co.kukurin.Main.HASH_FUNCTION;
+import static co.kukurin.TestSequences.randomBases;
 
-import com.google.common.hash.HashFunction;
-import com.google.common.hash.Hasher;
-import java.nio.charset.Charset;
+import co.kukurin.hash.KmerHasher;
+import co.kukurin.hash.Minimizer;
+import co.kukurin.hash.MinimizerArray;
+import co.kukurin.hash.SequenceKmers;
+import co.kukurin.stat.StatUtils;
 import org.junit.Assert;
 import org.junit.Test;
 
 public class HashingTest {
 
-  private final HashFunction function = HASH_FUNCTION;
-
   @Test
-  public void murmurHash_charArrayVsStream_shouldBeEqual() throws Exception {
-    Hasher hasher1 = function.newHasher();
-    Hasher hasher2 = function.newHasher();
+  public void kmerHasher_rollingVsFresh_shouldBeEqual() throws Exception {
+    KmerHasher rolling = new KmerHasher(4);
+    for (char c : "ACGTTG".toCharArray()) {
+      rolling.push(c);
+    }
 
-    for (char b : "test string".toCharArray()) {
-      hasher1.putChar(b);
+    KmerHasher fresh = new KmerHasher(4);
+    for (char c : "gttg".toCharArray()) {
+      fresh.push(c);
     }
 
-    long hash1 = hasher1.hash().asLong();
+    Assert.assertEquals(fresh.hash(), rolling.hash());
+  }
 
-    "test string".chars().forEach(c -> hasher2.putChar((char) c));
-    long hash2 = hasher2.hash().asLong();
+  @Test
+  public void kmerHasher_ambiguousBase_shouldResetKmer() throws Exception {
+    KmerHasher hasher = new KmerHasher(3);
 
-    Assert.assertEquals(hash1, hash2);
+    Assert.assertFalse(hasher.push('A'));
+    Assert.assertFalse(hasher.push('C'));
+    Assert.assertFalse(hasher.push('N'));
+    Assert.assertFalse(hasher.push('G'));
+    Assert.assertFalse(hasher.push('T'));
+    Assert.assertTrue(hasher.push('A'));
   }
 
   @Test
-  public void murmurHash_charArrayVsString_shouldNotBeEqual() throws Exception {
-    Hasher hasher1 = function.newHasher();
-    Hasher hasher2 = function.newHasher();
+  public void kmerHasher_reverseComplement_shouldBeEqualOnOppositeStrand() throws Exception {
+    KmerHasher forward = new KmerHasher(5);
+    for (char c : "AACGT".toCharArray()) {
+      forward.push(c);
+    }
 
-    for (char b : "test string".toCharArray()) {
-      hasher1.putChar(b);
+    KmerHasher reverse = new KmerHasher(5);
+    for (char c : "ACGTT".toCharArray()) {
+      reverse.push(c);
     }
 
-    long hash1 = hasher1.hash().asLong();
+    Assert.assertEquals(forward.hash(), reverse.hash());
+    Assert.assertEquals(KmerHasher.FORWARD, forward.strand());
+    Assert.assertEquals(KmerHasher.REVERSE, reverse.strand());
+  }
+
+  @Test
+  public void minimizer_sampleFraction_shouldKeepSubsetOfThatSize() throws Exception {
+    byte[] bases = randomBases(5, 100_000);
+
+    MinimizerArray all = new Minimizer(10).minimize(new SequenceKmers(bases, bases.length, 16));
+    MinimizerArray sampled = new Minimizer(10, Minimizer.hashThreshold(0.25))
+        .minimize(new SequenceKmers(bases, bases.length, 16));
 
-    hasher2.putString("test string", Charset.defaultCharset());
-    long hash2 = hasher2.hash().asLong();
+    Assert.assertEquals(0.25, (double) sampled.size() / all.size(), 0.02);
+    for (int i = 0; i < sampled.size(); i++) {
+      int index = all.indexOfFirstPositionGte(sampled.getPosition(i));
+      Assert.assertEquals(all.getHash(index), sampled.getHash(i));
+    }
+  }
 
-    Assert.assertNotEquals(hash1, hash2);
+  @Test
+  public void recommendedWindowSize_kilobaseReads_shouldShrinkWithReferenceSize() {
+    // 1 kb reads at 85% identity against a 2 Mb genome yield the default window
+    Assert.assertEquals(90, StatUtils.recommendedWindowSize(1e-3, 16, 0.15, 1000, 2_000_000));
+    Assert.assertEquals(46,
+        StatUtils.recommendedWindowSize(1e-3, 16, 0.15, 1000, 3_000_000_000L));
+    Assert.assertEquals(500, StatUtils.recommendedWindowSize(1e-3, 16, 0.05, 1000, 2_000_000));
   }
 }
@@ -0,0 +1,30 @@
+package co.kukurin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import co.kukurin.benchmark.LatencyHistogram;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+  @Test
+  public void percentile_shouldBeWithinRelativePrecision() {
+    // given
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (long value = 1; value <= 100_000; value++) {
+      histogram.record(value * 1000);
+    }
+
+    // when
+    long median = histogram.percentile(50);
+    long p99 = histogram.percentile(99);
+
+    // then
+    assertEquals(100_000, histogram.count());
+    assertEquals(100_000_000, histogram.max());
+    assertEquals(50_000_500, histogram.mean(), 1e-6);
+    assertTrue(Math.abs(median - 50_000_000) <= 50_000_000 / 32);
+    assertTrue(Math.abs(p99 - 99_000_000) <= 99_000_000 / 32);
+  }
+}
@@ -0,0 +1,91 @@
+package co.kukurin;
+
+import static co.kukurin.TestSequences.DENSE_PARAMETERS;
+import static co.kukurin.TestSequences.indexOf;
+import static co.kukurin.TestSequences.randomBases;
+import static org.junit.Assert.assertEquals;
+
+import co.kukurin.ParameterSupplier.ConstantParameters;
+import co.kukurin.benchmark.PipelineMetrics;
+import co.kukurin.index.ReferenceIndex;
+import co.kukurin.map.QueryMapper;
+import co.kukurin.server.MappingServer;
+import java.io.ByteArrayOutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.Test;
+
+public class MappingServerTest {
+
+  @Test
+  public void mappingServer_concurrentClients_shouldEachReceiveTheirMappings() throws Exception {
+    // given
+    byte[] reference = randomBases(7, 20000);
+
+    ConstantParameters parameters = DENSE_PARAMETERS;
+    ReferenceIndex referenceIndex = indexOf(reference, parameters);
+
+    MappingServer server = new MappingServer(new QueryMapper(referenceIndex, parameters),
+        referenceIndex.getSequences(), 2, 2, new PipelineMetrics());
+    ServerSocketChannel serverChannel = ServerSocketChannel.open()
+        .bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    SocketAddress address = serverChannel.getLocalAddress();
+    Thread serving = new Thread(() -> {
+      try {
+        server.serve(serverChannel);
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+    });
+    serving.start();
+
+    // when
+    List<CompletableFuture<String>> responses = new ArrayList<>();
+    for (int client = 0; client < 3; client++) {
+      int start = 1000 + 5000 * client;
+      String batch = ">read_" + client + "\n" + new String(reference, start, 2000, "US-ASCII")
+          + "\n>unmapped\nACGTACGTACGTACGTACGTACGTACGTACGTACGT\n";
+      responses.add(CompletableFuture.supplyAsync(() -> request(address, batch)));
+    }
+
+    // then
+    for (int client = 0; client < 3; client++) {
+      int start = 1000 + 5000 * client;
+      String[] fields = responses.get(client).join().split("\t");
+      assertEquals("read_" + client, fields[0]);
+      assertEquals(start, Integer.parseInt(fields[7]), 50);
+      assertEquals(1, responses.get(client).join().split("\n").length);
+    }
+
+    server.close();
+    serving.join();
+  }
+
+  private static String request(SocketAddress address, String batch) {
+    try (SocketChannel channel = SocketChannel.open(address)) {
+      ByteBuffer request = ByteBuffer.wrap(batch.getBytes(StandardCharsets.US_ASCII));
+      while (request.hasRemaining()) {
+        channel.write(request);
+      }
+      channel.shutdownOutput();
+
+      ByteArrayOutputStream response = new ByteArrayOutputStream();
+      ByteBuffer buffer = ByteBuffer.allocate(4096);
+      while (channel.read(buffer) >= 0) {
+        response.write(buffer.array(), 0, buffer.position());
+        buffer.clear();
+      }
+      return response.toString("UTF-8");
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
@@ -0,0 +1,89 @@
+package co.kukurin;
+
+import static org.junit.Assert.assertEquals;
+
+import co.kukurin.fasta.SequenceRecord;
+import co.kukurin.index.ReferenceSequences;
+import co.kukurin.map.ReadMapper.ReadMapperResult;
+import co.kukurin.output.AsyncOutput;
+import co.kukurin.output.PafWriter;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+
+public class PafWriterTest {
+
+  @Test
+  public void pafWriter_smallBuffers_shouldWriteAllMappingsInOrder() throws Exception {
+    // given
+    ReferenceSequences sequences = ReferenceSequences.builder()
+        .add("chr1", 1000)
+        .add("chr2", 500)
+        .build();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    // buffers smaller than a line, so every line spans buffers flushed in the background
+    PafWriter writer = new PafWriter(sequences, new AsyncOutput(Channels.newChannel(bytes), 7));
+
+    // when
+    writer.write(new SequenceRecord("read_1 description", new byte[100], 100),
+        Collections.singletonList(new ReadMapperResult(1, "chr2", 450, true, 0.5, 0.96)));
+    writer.write(new SequenceRecord("read_2", new byte[100], 100), Collections.emptyList());
+    writer.write(new SequenceRecord("read_3", new byte[200], 200), Arrays.asList(
+        new ReadMapperResult(0, "chr1", 12, false, 0.5, 0.923456),
+        new ReadMapperResult(1, "chr2", 0, false, 0.4, 0.9)));
+    writer.close();
+
+    // then
+    assertEquals(""
+            + "read_1\t100\t0\t100\t-\tchr2\t500\t450\t500\t96\t100\t255\ttp:A:P\tid:f:0.9600\n"
+            + "read_3\t200\t0\t200\t+\tchr1\t1000\t12\t212\t185\t200\t255\ttp:A:P\tid:f:0.9235\n"
+            + "read_3\t200\t0\t200\t+\tchr2\t500\t0\t200\t180\t200\t255\ttp:A:S\tid:f:0.9000\n",
+        bytes.toString("UTF-8"));
+  }
+
+  @Test
+  public void pafWriter_synchronousOutput_shouldWriteAllMappingsInOrder() throws Exception {
+    // given
+    ReferenceSequences sequences = ReferenceSequences.builder()
+        .add("chr1", 1000)
+        .build();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    PafWriter writer =
+        new PafWriter(sequences, AsyncOutput.synchronous(Channels.newChannel(bytes), 7));
+
+    // when
+    writer.write(new SequenceRecord("read_1", new byte[100], 100), Arrays.asList(
+        new ReadMapperResult(0, "chr1", 12, false, 0.5, 0.95),
+        new ReadMapperResult(0, "chr1", 500, true, 0.4, 0.9)));
+    writer.close();
+
+    // then
+    assertEquals(""
+            + "read_1\t100\t0\t100\t+\tchr1\t1000\t12\t112\t95\t100\t255\ttp:A:P\tid:f:0.9500\n"
+            + "read_1\t100\t0\t100\t-\tchr1\t1000\t500\t600\t90\t100\t255\ttp:A:S\tid:f:0.9000\n",
+        bytes.toString("UTF-8"));
+  }
+
+  @Test
+  public void pafWriter_verifiedMapping_shouldWriteAlignedInterval() throws Exception {
+    // given
+    ReferenceSequences sequences = ReferenceSequences.builder()
+        .add("chr1", 1000)
+        .build();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    PafWriter writer = new PafWriter(sequences, Channels.newChannel(bytes));
+
+    // when
+    writer.write(new SequenceRecord("read_1", new byte[100], 100), Collections.singletonList(
+        new ReadMapperResult(0, "chr1", 40, false, 0.5, 1 - 6 / 104.0, 144, 6)));
+    writer.close();
+
+    // then
+    assertEquals(""
+            + "read_1\t100\t0\t100\t+\tchr1\t1000\t40\t144\t98\t104\t255\ttp:A:P\t"
+            + "id:f:0.9423\tNM:i:6\n",
+        bytes.toString("UTF-8"));
+  }
+}
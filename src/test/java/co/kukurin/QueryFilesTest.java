@@ -0,0 +1,57 @@
+package co.kukurin;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class QueryFilesTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void queryFiles_globsAndManifest_shouldExpandInOrderOnce() throws Exception {
+    // given
+    Path root = folder.getRoot().toPath();
+    Path queries = Files.createDirectories(root.resolve("queries"));
+    for (String name : Arrays.asList("sim-2-1.fq", "sim-1-1.fq", "sim-1-2.fq", "other.fa")) {
+      Files.createFile(queries.resolve(name));
+    }
+    Path manifest = root.resolve("manifest.txt");
+    Files.write(manifest, Arrays.asList(
+        "# simulated reads",
+        "queries/other.fa",
+        "",
+        "queries/sim-?-1.fq"));
+
+    // when
+    List<Path> files = QueryFiles.expand(Arrays.asList(
+        queries.resolve("sim-2-1.fq").toString(),
+        "@" + manifest,
+        root + "/**/*-2.fq"));
+
+    // then
+    assertEquals(Arrays.asList(
+        queries.resolve("sim-2-1.fq"),
+        queries.resolve("other.fa"),
+        queries.resolve("sim-1-1.fq"),
+        queries.resolve("sim-1-2.fq")), files);
+  }
+
+  @Test(expected = IOException.class)
+  public void queryFiles_globWithoutMatches_shouldFail() throws Exception {
+    // given
+    String pattern = folder.getRoot() + "/*.fq";
+
+    // when
+    QueryFiles.expand(Collections.singletonList(pattern));
+  }
+}
@@ -1,20 +1,32 @@
 package co.kukurin;
 
+import static co.kukurin.TestSequences.DENSE_PARAMETERS;
+import static co.kukurin.TestSequences.indexOf;
+import static co.kukurin.TestSequences.randomBases;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import co.kukurin.ParameterSupplier.ConstantParameters;
-import co.kukurin.hash.Hash;
+import co.kukurin.benchmark.PipelineMetrics;
+import co.kukurin.fasta.SequenceRecord;
+import co.kukurin.hash.MinimizerArray;
+import co.kukurin.index.ReferenceIndex;
+import co.kukurin.index.ReferenceSequences;
+import co.kukurin.map.CandidateRegions;
+import co.kukurin.map.MappingBuffers;
+import co.kukurin.map.MappingOptions;
+import co.kukurin.map.QueryMapper;
 import co.kukurin.map.ReadMapper;
 import co.kukurin.map.ReadMapper.CandidateRegion;
-import com.google.common.collect.ImmutableMap;
+import co.kukurin.map.ReadMapper.ReadMapperResult;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Random;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.stream.LongStream;
 import org.junit.Test;
 
 public class ReadMapperTest {
@@ -30,12 +42,16 @@ public class ReadMapperTest {
     ReadMapper readMapper = new ReadMapper(new ParameterSupplier(parameters, 10, 10));
 
     // when
-    List<Hash> hashList = Stream.of(1L, 2L).map(Hash::new).collect(Collectors.toList());
-    Set<Hash> hashes = new HashSet<>(hashList);
+    long[] hashes = {1L, 2L};
 
-    Map<Hash, Collection<Integer>> hashToReferenceReadIndices = ImmutableMap
-        .of(new Hash(1L), Arrays.asList(1, 2, 3),
-            new Hash(2L), Arrays.asList(4, 5));
+    MinimizerArray referenceMinimizers = new MinimizerArray();
+    referenceMinimizers.add(1L, 1);
+    referenceMinimizers.add(1L, 2);
+    referenceMinimizers.add(1L, 3);
+    referenceMinimizers.add(2L, 4);
+    referenceMinimizers.add(2L, 5);
+    ReferenceIndex hashToReferenceReadIndices = ReferenceIndex.build(
+        referenceMinimizers, ReferenceSequences.builder().add("ref", 100).build(), 16, 90);
 
     List<CandidateRegion> regions = readMapper
         .collectCandidateRegions(hashes, hashToReferenceReadIndices);
@@ -44,4 +60,331 @@ public class ReadMapperTest {
     assertEquals(1, regions.size());
     assertEquals(new CandidateRegion(0, 1), regions.get(0));
   }
+
+  @Test
+  public void readMapper_regions_doNotSpanSequences() throws Exception {
+    // given
+    // sketchSize * tau = 2
+    ConstantParameters parameters = ConstantParameters.builder()
+        .tau(0.5)
+        .kmerSize(16)
+        .build();
+    ReadMapper readMapper = new ReadMapper(new ParameterSupplier(parameters, 10, 4));
+
+    // when
+    long[] hashes = {1L, 2L};
+
+    MinimizerArray referenceMinimizers = new MinimizerArray();
+    referenceMinimizers.add(1L, 18);
+    referenceMinimizers.add(2L, 22);
+    referenceMinimizers.add(1L, 24);
+    ReferenceSequences sequences = ReferenceSequences.builder()
+        .add("first", 20)
+        .add("second", 20)
+        .build();
+    ReferenceIndex reference = ReferenceIndex.build(referenceMinimizers, sequences, 16, 90);
+
+    List<CandidateRegion> regions = readMapper.collectCandidateRegions(hashes, reference);
+
+    // then
+    assertEquals(1, regions.size());
+    assertEquals(new CandidateRegion(20, 22), regions.get(0));
+  }
+
+  @Test
+  public void readMapper_regions_frequentHashesLowerRequiredHits() throws Exception {
+    // given
+    // sketchSize * tau = 2, hash 1 is filtered
+    ConstantParameters parameters = ConstantParameters.builder()
+        .tau(1.0)
+        .kmerSize(16)
+        .build();
+    ReadMapper readMapper = new ReadMapper(new ParameterSupplier(parameters, 10, 2));
+
+    // when
+    long[] hashes = {1L, 2L};
+
+    MinimizerArray referenceMinimizers = new MinimizerArray();
+    referenceMinimizers.add(1L, 0);
+    referenceMinimizers.add(1L, 20);
+    referenceMinimizers.add(1L, 30);
+    referenceMinimizers.add(1L, 40);
+    referenceMinimizers.add(2L, 70);
+    ReferenceIndex reference = ReferenceIndex.build(referenceMinimizers,
+        ReferenceSequences.builder().add("ref", 100).build(), 16, 90)
+        .withMaxOccurrences(3);
+
+    List<CandidateRegion> regions = readMapper.collectCandidateRegions(hashes, reference);
+
+    // then
+    assertEquals(1, regions.size());
+    assertEquals(new CandidateRegion(61, 70), regions.get(0));
+  }
+
+  @Test
+  public void readMapper_regions_manyHitsAreSortedAcrossPostingLists() throws Exception {
+    // given
+    // sketchSize * tau = 2
+    ConstantParameters parameters = ConstantParameters.builder()
+        .tau(1.0)
+        .kmerSize(16)
+        .build();
+    ReadMapper readMapper = new ReadMapper(new ParameterSupplier(parameters, 10, 2));
+
+    // when
+    long[] hashes = {1L, 2L};
+
+    int pairs = 300;
+    MinimizerArray referenceMinimizers = new MinimizerArray();
+    for (int i = 0; i < pairs; i++) {
+      referenceMinimizers.add(1L, 1000 * i);
+      referenceMinimizers.add(2L, 1000 * i + 5);
+    }
+    ReferenceIndex reference = ReferenceIndex.build(referenceMinimizers,
+        ReferenceSequences.builder().add("ref", 1000 * pairs).build(), 16, 90);
+
+    List<CandidateRegion> regions = readMapper.collectCandidateRegions(hashes, reference);
+
+    // then
+    assertEquals(pairs, regions.size());
+    assertEquals(new CandidateRegion(0, 0), regions.get(0));
+    for (int i = 1; i < pairs; i++) {
+      assertEquals(new CandidateRegion(1000 * i - 4, 1000 * i), regions.get(i));
+    }
+  }
+
+  @Test
+  public void queryMapper_reverseComplementQuery_shouldMapToReverseStrand() throws Exception {
+    // given
+    byte[] reference = randomBases(7, 20000);
+
+    byte[] query = new byte[2000];
+    for (int i = 0; i < query.length; i++) {
+      switch (reference[5000 + query.length - 1 - i]) {
+        case 'A': query[i] = 'T'; break;
+        case 'C': query[i] = 'G'; break;
+        case 'G': query[i] = 'C'; break;
+        default: query[i] = 'A'; break;
+      }
+    }
+
+    ConstantParameters parameters = DENSE_PARAMETERS;
+    ReferenceIndex referenceIndex = indexOf(reference, parameters);
+
+    // when
+    ReadMapperResult result = new QueryMapper(referenceIndex, parameters)
+        .map(new SequenceRecord("query", query, query.length))
+        .get();
+
+    // then
+    assertTrue(result.isReverseStrand());
+    assertEquals(5000, result.getIndex(), 50);
+    assertEquals(1.0, result.getJaccardEstimate(), 0.01);
+  }
+
+  @Test
+  public void queryMapper_repeatedQuery_shouldReportEachCopyOnce() throws Exception {
+    // given
+    byte[] reference = randomBases(11, 30000);
+    System.arraycopy(reference, 5000, reference, 20000, 2000);
+    byte[] query = Arrays.copyOfRange(reference, 5000, 7000);
+
+    ConstantParameters parameters = DENSE_PARAMETERS;
+    ReferenceIndex referenceIndex = indexOf(reference, parameters);
+    SequenceRecord record = new SequenceRecord("query", query, query.length);
+
+    // when
+    List<ReadMapperResult> all = new QueryMapper(referenceIndex, parameters,
+        new PipelineMetrics(), MappingOptions.defaults().withMaxMappings(0)).mapAll(record);
+    List<ReadMapperResult> best = new QueryMapper(referenceIndex, parameters,
+        new PipelineMetrics(), MappingOptions.defaults()).mapAll(record);
+
+    // then
+    assertEquals(2, all.size());
+    assertEquals(5000, all.get(0).getIndex(), 50);
+    assertEquals(20000, all.get(1).getIndex(), 50);
+    assertEquals(1.0, all.get(1).getJaccardEstimate(), 0.01);
+    assertEquals(1, best.size());
+    assertEquals(all.get(0), best.get(0));
+  }
+
+  @Test
+  public void queryMapper_segmentedQueryAcrossBreakpoint_shouldChainEachSide() throws Exception {
+    // given
+    byte[] reference = randomBases(13, 40000);
+    // 6 kb from 5000 joined to 6 kb from 25000
+    byte[] query = new byte[12000];
+    System.arraycopy(reference, 5000, query, 0, 6000);
+    System.arraycopy(reference, 25000, query, 6000, 6000);
+
+    ConstantParameters parameters = DENSE_PARAMETERS;
+    ReferenceIndex referenceIndex = indexOf(reference, parameters);
+    MappingOptions options = MappingOptions.defaults()
+        .withMaxMappings(0)
+        .withSegmentLength(2000);
+
+    // when
+    List<ReadMapperResult> mappings = new QueryMapper(referenceIndex, parameters,
+        new PipelineMetrics(), options).mapAll(new SequenceRecord("query", query, query.length));
+
+    // then
+    // each side is a chain of 3 segments, mapping the query interval it covers
+    assertEquals(2, mappings.size());
+    Set<List<Integer>> intervals = mappings.stream()
+        .map(mapping -> Arrays.asList(mapping.getQueryStart(), mapping.queryEnd(query.length),
+            Math.round(mapping.getIndex() / 100f) * 100))
+        .collect(Collectors.toSet());
+    assertEquals(new HashSet<>(Arrays.asList(
+        Arrays.asList(0, 6000, 5000), Arrays.asList(6000, 12000, 25000))), intervals);
+    assertEquals(1.0, mappings.get(0).getJaccardEstimate(), 0.01);
+  }
+
+  @Test
+  public void queryMapper_segmentedQueryWithRepeats_shouldReportSupportedChains()
+      throws Exception {
+    // given
+    byte[] reference = randomBases(19, 40000);
+    // the last two segments of the query repeated at 20000, the second to last alone at 30000
+    System.arraycopy(reference, 6000, reference, 20000, 4000);
+    System.arraycopy(reference, 6000, reference, 30000, 2000);
+    byte[] query = Arrays.copyOfRange(reference, 0, 10000);
+
+    ConstantParameters parameters = DENSE_PARAMETERS;
+    ReferenceIndex referenceIndex = indexOf(reference, parameters);
+    MappingOptions options = MappingOptions.defaults()
+        .withMaxMappings(0)
+        .withSegmentLength(2000);
+
+    // when
+    List<ReadMapperResult> mappings = new QueryMapper(referenceIndex, parameters,
+        new PipelineMetrics(), options).mapAll(new SequenceRecord("query", query, query.length));
+
+    // then
+    // the single segment copy is not an alternative mapping of the query
+    assertEquals(2, mappings.size());
+    assertEquals(0, mappings.get(0).getQueryStart());
+    assertEquals(10000, mappings.get(0).queryEnd(query.length));
+    assertEquals(0, mappings.get(0).getIndex(), 50);
+    assertEquals(6000, mappings.get(1).getQueryStart());
+    assertEquals(10000, mappings.get(1).queryEnd(query.length));
+    assertEquals(20000, mappings.get(1).getIndex(), 50);
+    assertEquals(24000, mappings.get(1).targetEnd(query.length), 50);
+  }
+
+  @Test
+  public void readMapper_bestMatch_equalsBruteForceSharedCount() throws Exception {
+    // given
+    Random random = new Random(42);
+    int kmerSize = 4;
+    int windowSize = 5;
+    int queryLength = 40;
+    int windowSpan = queryLength - windowSize + 1 - kmerSize + 1;
+
+    MinimizerArray referenceMinimizers = new MinimizerArray();
+    for (int position = 0; position < 1000; position += 1 + random.nextInt(4)) {
+      referenceMinimizers.add(random.nextInt(60), position);
+    }
+    ReferenceIndex reference = ReferenceIndex.build(referenceMinimizers,
+        ReferenceSequences.builder().add("ref", 1000).build(), kmerSize, windowSize);
+    long[] queryHashes = LongStream.range(0, 30).map(i -> i * 2).toArray();
+
+    ConstantParameters parameters = ConstantParameters.builder()
+        .windowSize(windowSize)
+        .kmerSize(kmerSize)
+        .tau(0.1)
+        .build();
+    ReadMapper readMapper = new ReadMapper(
+        new ParameterSupplier(parameters, queryLength, queryHashes.length));
+    CandidateRegions regions = new CandidateRegions();
+    regions.add(100, 300);
+    regions.add(500, 900);
+
+    // when
+    ReadMapperResult result =
+        readMapper.findMostLikelyMatch(
+            reference, queryHashes, new int[queryHashes.length], regions).get();
+
+    // then
+    int bestShared = 0;
+    int bestIndex = -1;
+    for (CandidateRegion region : regions) {
+      for (int start = region.getLow(); start <= region.getHigh(); start++) {
+        Set<Long> window = new HashSet<>();
+        for (int i = 0; i < referenceMinimizers.size(); i++) {
+          int position = referenceMinimizers.getPosition(i);
+          if (position >= start && position <= start + windowSpan) {
+            window.add(referenceMinimizers.getHash(i));
+          }
+        }
+
+        TreeSet<Long> union = new TreeSet<>(window);
+        LongStream.of(queryHashes).forEach(union::add);
+        Set<Long> query = LongStream.of(queryHashes).boxed().collect(Collectors.toSet());
+        int shared = (int) union.stream().limit(queryHashes.length)
+            .filter(hash -> window.contains(hash) && query.contains(hash))
+            .count();
+
+        if (shared > bestShared) {
+          bestShared = shared;
+          bestIndex = start;
+        }
+      }
+    }
+
+    assertEquals(bestIndex, result.getIndex());
+    assertEquals(bestShared, Math.round(result.getJaccardEstimate() * queryHashes.length));
+  }
+
+  @Test
+  public void readMapper_boundedRegions_shouldMapAsPositionalScan() throws Exception {
+    // given
+    Random random = new Random(23);
+    int kmerSize = 4;
+    int windowSize = 5;
+    int queryLength = 40;
+
+    // two copies sharing 20 query hashes, the later one with more hits, so it is visited first
+    MinimizerArray referenceMinimizers = new MinimizerArray();
+    for (int position = 0; position < 5000; position++) {
+      if (position == 1000 || position == 4000) {
+        int copyEnd = position + (position == 1000 ? 20 : 32);
+        for (int i = 0; position < copyEnd; i++) {
+          referenceMinimizers.add(2 * (i % 20), position++);
+        }
+      } else if (random.nextInt(3) == 0) {
+        referenceMinimizers.add(random.nextInt(200), position);
+      }
+    }
+    ReferenceIndex reference = ReferenceIndex.build(referenceMinimizers,
+        ReferenceSequences.builder().add("ref", 5000).build(), kmerSize, windowSize);
+    long[] queryHashes = LongStream.range(0, 30).map(i -> i * 2).toArray();
+    int[] votes = new int[queryHashes.length];
+
+    ConstantParameters parameters = ConstantParameters.builder()
+        .windowSize(windowSize)
+        .kmerSize(kmerSize)
+        .tau(0.1)
+        .build();
+    ReadMapper readMapper = new ReadMapper(
+        new ParameterSupplier(parameters, queryLength, queryHashes.length));
+    CandidateRegions bounded =
+        readMapper.collectCandidateRegions(queryHashes, reference, new MappingBuffers());
+    CandidateRegions unbounded = new CandidateRegions();
+    for (CandidateRegion region : bounded) {
+      unbounded.add(region.getLow(), region.getHigh());
+    }
+
+    // when
+    List<ReadMapperResult> best = readMapper.findMappings(
+        reference, queryHashes, votes, bounded, 1);
+    List<ReadMapperResult> topThree = readMapper.findMappings(
+        reference, queryHashes, votes, bounded, 3);
+
+    // then
+    assertTrue(bounded.size() > 10);
+    assertTrue(bounded.getBound(0) < queryHashes.length);
+    assertEquals(1000, best.get(0).getIndex(), queryLength);
+    assertEquals(readMapper.findMappings(reference, queryHashes, votes, unbounded, 1), best);
+    assertEquals(readMapper.findMappings(reference, queryHashes, votes, unbounded, 3), topThree);
+  }
 }
@@ -0,0 +1,185 @@
+package co.kukurin;
+
+import static co.kukurin.TestSequences.randomBases;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import co.kukurin.hash.ChunkedMinimizer;
+import co.kukurin.hash.KmerHasher;
+import co.kukurin.hash.Minimizer;
+import co.kukurin.hash.MinimizerArray;
+import co.kukurin.hash.SequenceKmers;
+import co.kukurin.index.MinimizerIndex;
+import co.kukurin.index.PackedSequence;
+import co.kukurin.index.ReferenceIndex;
+import co.kukurin.index.ReferenceIndexFile;
+import co.kukurin.index.ReferenceSequences;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ReferenceIndexFileTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void indexFile_writeThenOpen_shouldQueryInPlace() throws Exception {
+    // given
+    MinimizerArray minimizers = new MinimizerArray();
+    minimizers.add(7L, 0);
+    minimizers.add(-3L, 4, KmerHasher.REVERSE);
+    minimizers.add(7L, 9);
+    ReferenceSequences sequences = ReferenceSequences.builder()
+        .add("first", 5)
+        .add("second", 7)
+        .build();
+    byte[] bases = "ACGTNacgtACG".getBytes(StandardCharsets.US_ASCII);
+    ReferenceIndex built = ReferenceIndex.build(minimizers, sequences, 16, 90)
+        .withMaxOccurrences(1)
+        .withBases(PackedSequence.builder().add(bases, 0, 5).add(bases, 5, 7).build());
+    Path path = folder.newFile("reference.idx").toPath();
+
+    // when
+    ReferenceIndexFile.write(built, path);
+    ReferenceIndex opened = ReferenceIndexFile.open(path);
+
+    // then
+    assertTrue(ReferenceIndexFile.isIndexFile(path));
+    assertEquals(16, opened.getKmerSize());
+    assertEquals(90, opened.getWindowSize());
+    assertEquals(1, opened.getMaxOccurrences());
+    assertEquals(3, opened.minimizerCount());
+    assertEquals(-3L, opened.getMinimizerHash(1));
+    assertEquals(9, opened.getMinimizerPosition(2));
+    assertEquals(KmerHasher.REVERSE, opened.getMinimizerStrand(1));
+    assertEquals(KmerHasher.FORWARD, opened.getMinimizerStrand(2));
+    assertEquals(2, opened.indexOfFirstMinimizerGte(5));
+
+    assertEquals(2, opened.getSequences().size());
+    assertEquals("second", opened.getSequences().getName(1));
+    assertEquals(5, opened.getSequences().getStart(1));
+    assertEquals(1, opened.getSequences().sequenceOf(9));
+    PackedSequence openedBases = opened.getBases().get();
+    assertEquals(12, openedBases.length());
+    for (int i = 0; i < openedBases.length(); i++) {
+      // N is stored as A
+      assertEquals(i == 4 ? PackedSequence.A : PackedSequence.code(bases[i]), openedBases.get(i));
+    }
+
+    MinimizerIndex table = opened.getMinimizerIndex();
+    int slot = table.find(7L);
+    assertEquals(2, table.postingsEnd(slot) - table.postingsStart(slot));
+    assertEquals(0, table.posting(table.postingsStart(slot)));
+    assertEquals(9, table.posting(table.postingsStart(slot) + 1));
+    assertEquals(MinimizerIndex.NOT_FOUND, table.find(8L));
+    assertEquals(2, table.distinctHashes());
+    assertEquals(1, table.occurrenceCutoff(0.5));
+    assertEquals(2, table.occurrenceCutoff(0.0));
+  }
+
+  @Test
+  public void indexFile_parallelBuild_shouldEqualSequentialBuild() throws Exception {
+    assertParallelBuildEqualsSequential(10);
+    // a window of 1 keeps every k-mer, including those at chunk seams
+    assertParallelBuildEqualsSequential(1);
+  }
+
+  private void assertParallelBuildEqualsSequential(int windowSize) throws Exception {
+    // given
+    // two sequences with runs of ambiguous bases, minimizers filling two table segments
+    Random random = new Random(3);
+    byte[][] bases = new byte[2][];
+    for (int sequence = 0; sequence < bases.length; sequence++) {
+      bases[sequence] = randomBases(random, 200_000 + 1234 * sequence);
+      for (int i = 0; i < bases[sequence].length; i += 7919) {
+        Arrays.fill(bases[sequence], i, Math.min(i + 40, bases[sequence].length), (byte) 'N');
+      }
+    }
+    int kmerSize = 15;
+
+    MinimizerArray sequential = new MinimizerArray();
+    ReferenceSequences.Builder sequences = ReferenceSequences.builder();
+    for (int sequence = 0; sequence < bases.length; sequence++) {
+      new Minimizer(windowSize).minimize(
+          new SequenceKmers(bases[sequence], bases[sequence].length, kmerSize),
+          sequential, sequences.nextStart());
+      sequences.add("chr" + sequence, bases[sequence].length);
+    }
+
+    ForkJoinPool pool = new ForkJoinPool(4);
+    // chunks much smaller than sequences, fed in pieces not aligned to chunks
+    ChunkedMinimizer chunkedMinimizer =
+        new ChunkedMinimizer(kmerSize, windowSize, Minimizer.ALL_HASHES, 1000, pool, 8);
+    int offset = 0;
+    for (byte[] sequence : bases) {
+      chunkedMinimizer.startSequence(offset);
+      for (int from = 0; from < sequence.length; from += 777) {
+        chunkedMinimizer.add(sequence, from, Math.min(777, sequence.length - from));
+      }
+      offset += chunkedMinimizer.endSequence();
+    }
+
+    // when
+    MinimizerArray parallel = chunkedMinimizer.finish();
+    Path sequentialPath = folder.newFile("sequential-" + windowSize + ".idx").toPath();
+    Path parallelPath = folder.newFile("parallel-" + windowSize + ".idx").toPath();
+    ReferenceIndexFile.write(
+        ReferenceIndex.build(sequential, sequences.build(), kmerSize, windowSize), sequentialPath);
+    ReferenceIndex parallelIndex =
+        ReferenceIndex.build(parallel, sequences.build(), kmerSize, windowSize,
+            Minimizer.ALL_HASHES, pool);
+    ReferenceIndexFile.write(parallelIndex, parallelPath);
+    pool.shutdown();
+
+    // then
+    assertTrue(parallelIndex.getMinimizerIndex().capacity() > 1 << 16);
+    assertArrayEquals(Files.readAllBytes(sequentialPath), Files.readAllBytes(parallelPath));
+    assertFalse(ReferenceIndexFile.open(parallelPath).getBases().isPresent());
+    MinimizerIndex table = parallelIndex.getMinimizerIndex();
+    for (int i = 0; i < parallel.size(); i++) {
+      assertTrue(table.find(parallel.getHash(i)) != MinimizerIndex.NOT_FOUND);
+    }
+  }
+
+  @Test
+  public void loadReference_indexFileWithCutoffOptions_shouldReplaceStoredCutoff()
+      throws Exception {
+    // given
+    MinimizerArray minimizers = new MinimizerArray();
+    for (int i = 0; i < 10; i++) {
+      minimizers.add(i < 5 ? 7L : 100 + i, 10 * i);
+    }
+    Path path = folder.newFile("reference.idx").toPath();
+    ReferenceIndexFile.write(ReferenceIndex.build(minimizers,
+        ReferenceSequences.builder().add("ref", 100).build(), 16, 10).withMaxOccurrences(4), path);
+
+    // when
+    ReferenceIndex stored = Main.loadReference(path.toString(), Arguments.parse(new String[0]), 1);
+    ReferenceIndex maxOccurrences = Main.loadReference(
+        path.toString(), Arguments.parse(new String[] {"--max-occ", "2"}), 1);
+    ReferenceIndex filterFraction = Main.loadReference(
+        path.toString(), Arguments.parse(new String[] {"--filter-fraction", "0"}), 1);
+
+    // then
+    assertEquals(4, stored.getMaxOccurrences());
+    assertEquals(2, maxOccurrences.getMaxOccurrences());
+    assertEquals(5, filterFraction.getMaxOccurrences());
+  }
+
+  @Test
+  public void indexFile_fastaInput_isNotIndexFile() throws Exception {
+    Path path = folder.newFile("reference.fa").toPath();
+    Files.write(path, ">header\nACGT\n".getBytes());
+
+    assertFalse(ReferenceIndexFile.isIndexFile(path));
+  }
+}
@@ -0,0 +1,147 @@
+package co.kukurin;
+
+import static org.junit.Assert.assertEquals;
+
+import co.kukurin.fasta.FastqChannelReader;
+import co.kukurin.fasta.RecordSource;
+import co.kukurin.fasta.SequenceFiles;
+import co.kukurin.fasta.SequenceRecord;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SequenceFilesTest {
+
+  private static final String FASTQ = "@read_1 first\n"
+      + "ACGT\n"
+      + "AC\n"
+      + "+\n"
+      + "@@II\n"
+      + "II\n"
+      + "@read_2\n"
+      + "GGGG\n"
+      + "+read_2\n"
+      + "@III\n";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void fastq_qualityStartingWithHeaderMarker_shouldBeSkipped() throws Exception {
+    // given
+    // small buffer, so quality lines span multiple reads from the channel
+    FastqChannelReader reader = new FastqChannelReader(
+        Channels.newChannel(new ByteArrayInputStream(FASTQ.getBytes())), 4);
+
+    // when
+    List<SequenceRecord> records = readAll(reader);
+
+    // then
+    assertEquals(2, records.size());
+    assertEquals("read_1 first", records.get(0).getHeader());
+    assertEquals("ACGTAC", bases(records.get(0)));
+    assertEquals("read_2", records.get(1).getName());
+    assertEquals("GGGG", bases(records.get(1)));
+  }
+
+  @Test
+  public void openRecords_gzipFastq_shouldDetectFormat() throws Exception {
+    // given
+    Path path = folder.newFile("reads.fq.gz").toPath();
+    try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(path))) {
+      out.write(FASTQ.getBytes());
+    }
+
+    // when
+    List<SequenceRecord> records = readAll(SequenceFiles.openRecords(path, 1));
+
+    // then
+    assertEquals(2, records.size());
+    assertEquals("GGGG", bases(records.get(1)));
+  }
+
+  @Test
+  public void openRecords_bgzfFasta_shouldInflateBlocksInOrder() throws Exception {
+    // given
+    StringBuilder fasta = new StringBuilder();
+    for (int i = 0; i < 200; i++) {
+      fasta.append(">read_").append(i).append('\n').append("ACGTTGCA").append(i % 10).append('\n');
+    }
+    Path path = folder.newFile("reads.fa.gz").toPath();
+    // tiny blocks, so records span blocks inflated on different threads
+    Files.write(path, bgzf(fasta.toString().getBytes(), 37));
+
+    // when
+    List<SequenceRecord> records = readAll(SequenceFiles.openRecords(path, 4));
+
+    // then
+    assertEquals(200, records.size());
+    for (int i = 0; i < 200; i++) {
+      assertEquals("read_" + i, records.get(i).getHeader());
+      assertEquals("ACGTTGCA" + (i % 10), bases(records.get(i)));
+    }
+  }
+
+  private static List<SequenceRecord> readAll(RecordSource source) throws Exception {
+    List<SequenceRecord> records = new ArrayList<>();
+    try (RecordSource closing = source) {
+      for (Optional<SequenceRecord> record = closing.nextRecord();
+          record.isPresent();
+          record = closing.nextRecord()) {
+        records.add(record.get());
+      }
+    }
+    return records;
+  }
+
+  private static String bases(SequenceRecord record) {
+    return new String(record.getBases(), 0, record.getLength());
+  }
+
+  /**
+   * Compresses data the way bgzip does, followed by the empty end-of-file block.
+   */
+  private static byte[] bgzf(byte[] data, int blockSize) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (int offset = 0; ; offset = Math.min(offset + blockSize, data.length)) {
+      int length = Math.min(blockSize, data.length - offset);
+      Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, /*nowrap=*/ true);
+      deflater.setInput(data, offset, length);
+      deflater.finish();
+      byte[] compressed = new byte[length + 64];
+      int compressedLength = deflater.deflate(compressed);
+      deflater.end();
+
+      CRC32 crc = new CRC32();
+      crc.update(data, offset, length);
+      ByteBuffer block = ByteBuffer.allocate(18 + compressedLength + 8)
+          .order(ByteOrder.LITTLE_ENDIAN)
+          .put(new byte[]{0x1f, (byte) 0x8b, 8, 4, 0, 0, 0, 0, 0, (byte) 0xff, 6, 0, 'B', 'C'})
+          .putShort((short) 2)
+          .putShort((short) (18 + compressedLength + 8 - 1));
+      block.put(compressed, 0, compressedLength)
+          .putInt((int) crc.getValue())
+          .putInt(length);
+      out.write(block.array(), 0, block.capacity());
+
+      if (length == 0) {
+        break;
+      }
+    }
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,57 @@
+package co.kukurin;
+
+import co.kukurin.ParameterSupplier.ConstantParameters;
+import co.kukurin.hash.Minimizer;
+import co.kukurin.hash.SequenceKmers;
+import co.kukurin.index.ReferenceIndex;
+import co.kukurin.index.ReferenceSequences;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Random sequences and in-memory indexes shared by tests.
+ */
+final class TestSequences {
+
+  /**
+   * Parameters with a sketch dense enough to map queries of a few kilobases reliably.
+   */
+  static final ConstantParameters DENSE_PARAMETERS = ConstantParameters.builder()
+      .windowSize(10)
+      .kmerSize(16)
+      .tau(0.5)
+      .build();
+
+  private TestSequences() {
+  }
+
+  /**
+   * @return given number of uniformly random ACGT bases, the same for the same seed.
+   */
+  static byte[] randomBases(long seed, int length) {
+    return randomBases(new Random(seed), length);
+  }
+
+  /**
+   * @return given number of uniformly random ACGT bases drawn from given source.
+   */
+  static byte[] randomBases(Random random, int length) {
+    byte[] bases = new byte[length];
+    for (int i = 0; i < length; i++) {
+      bases[i] = (byte) "ACGT".charAt(random.nextInt(4));
+    }
+    return bases;
+  }
+
+  /**
+   * @return in-memory index of given bases as a single sequence named {@code ref}.
+   */
+  static ReferenceIndex indexOf(byte[] bases, ConstantParameters parameters) throws IOException {
+    return ReferenceIndex.build(
+        new Minimizer(parameters.getWindowSize()).minimize(
+            new SequenceKmers(bases, bases.length, parameters.getKmerSize())),
+        ReferenceSequences.builder().add("ref", bases.length).build(),
+        parameters.getKmerSize(),
+        parameters.getWindowSize());
+  }
+}